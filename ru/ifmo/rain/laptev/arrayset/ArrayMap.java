@@ -0,0 +1,247 @@
+package ru.ifmo.rain.laptev.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable {@link NavigableMap} backed by sorted keys and values in parallel arrays.
+ * Keys are an {@link ArraySet}, values are sliced and reversed with them, so descending maps
+ * and sub-maps are views sharing the arrays.
+ */
+public class ArrayMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+    private final ArraySet<K> keys;
+    private final ArraySet.ReversibleList<V> values;
+
+    public ArrayMap() {
+        this(Collections.emptyMap(), null);
+    }
+
+    public ArrayMap(final Comparator<? super K> comparator) {
+        this(Collections.emptyMap(), comparator);
+    }
+
+    public ArrayMap(final Map<? extends K, ? extends V> map) {
+        this(map, null);
+    }
+
+    /**
+     * Of keys equal by the comparator the first one is kept with the value of the last one, as in {@link TreeMap}.
+     */
+    public ArrayMap(final Map<? extends K, ? extends V> map, final Comparator<? super K> comparator) {
+        @SuppressWarnings("unchecked")
+        final Entry<K, V>[] entries = (Entry<K, V>[]) map.entrySet().toArray(new Entry<?, ?>[0]);
+        Arrays.parallelSort(entries, (first, second) -> compare(comparator, first.getKey(), second.getKey()));
+        final List<K> keyList = new ArrayList<>(entries.length);
+        final List<V> valueList = new ArrayList<>(entries.length);
+        for (Entry<K, V> entry : entries) {
+            if (!keyList.isEmpty() && compare(comparator, keyList.get(keyList.size() - 1), entry.getKey()) == 0) {
+                valueList.set(valueList.size() - 1, entry.getValue());
+            } else {
+                keyList.add(entry.getKey());
+                valueList.add(entry.getValue());
+            }
+        }
+        this.keys = new ArraySet<>(new ArraySet.ReversibleList<>(keyList, ArraySet.SearchLayout.BINARY, comparator), comparator);
+        this.values = new ArraySet.ReversibleList<>(valueList, ArraySet.SearchLayout.BINARY, null);
+    }
+
+    private ArrayMap(final ArraySet<K> keys, final ArraySet.ReversibleList<V> values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    private static <K> int compare(final Comparator<? super K> comparator, final K first, final K second) {
+        return comparator == null ? ((Comparable) first).compareTo(second) : comparator.compare(first, second);
+    }
+
+    @Override
+    public V get(final Object key) {
+        final int index = keys.indexOf(key);
+        return index >= 0 ? values.get(index) : null;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return keys.contains(key);
+    }
+
+    private Entry<K, V> entry(final int index) {
+        if (index < 0 || index >= size()) {
+            return null;
+        }
+        return new SimpleImmutableEntry<>(keys.get(index), values.get(index));
+    }
+
+    @Override
+    public Entry<K, V> lowerEntry(final K key) {
+        return entry(keys.getIndex(key, -1, -1));
+    }
+
+    @Override
+    public K lowerKey(final K key) {
+        return keys.lower(key);
+    }
+
+    @Override
+    public Entry<K, V> floorEntry(final K key) {
+        return entry(keys.getIndex(key, 0, -1));
+    }
+
+    @Override
+    public K floorKey(final K key) {
+        return keys.floor(key);
+    }
+
+    @Override
+    public Entry<K, V> ceilingEntry(final K key) {
+        return entry(keys.getIndex(key, 0, 0));
+    }
+
+    @Override
+    public K ceilingKey(final K key) {
+        return keys.ceiling(key);
+    }
+
+    @Override
+    public Entry<K, V> higherEntry(final K key) {
+        return entry(keys.getIndex(key, 1, 0));
+    }
+
+    @Override
+    public K higherKey(final K key) {
+        return keys.higher(key);
+    }
+
+    @Override
+    public Entry<K, V> firstEntry() {
+        return entry(0);
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return entry(size() - 1);
+    }
+
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        throw new UnsupportedOperationException("pollFirstEntry is unsupported");
+    }
+
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        throw new UnsupportedOperationException("pollLastEntry is unsupported");
+    }
+
+    @Override
+    public ArrayMap<K, V> descendingMap() {
+        return new ArrayMap<>(keys.descendingSet(), values.getDescendingList());
+    }
+
+    @Override
+    public ArraySet<K> navigableKeySet() {
+        return keys;
+    }
+
+    @Override
+    public ArraySet<K> keySet() {
+        return keys;
+    }
+
+    @Override
+    public ArraySet<K> descendingKeySet() {
+        return keys.descendingSet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return values;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new Iterator<>() {
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < size();
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return entry(index++);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ArrayMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public ArrayMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        return slice(keys.getIndex(fromKey, fromInclusive ? 0 : 1, 0), keys.getIndex(toKey, toInclusive ? 0 : -1, -1) + 1);
+    }
+
+    @Override
+    public ArrayMap<K, V> headMap(K toKey, boolean inclusive) {
+        return slice(0, keys.getIndex(toKey, inclusive ? 0 : -1, -1) + 1);
+    }
+
+    @Override
+    public ArrayMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return slice(keys.getIndex(fromKey, inclusive ? 0 : 1, 0), size());
+    }
+
+    private ArrayMap<K, V> slice(int fromIndex, int toIndex) {
+        fromIndex = Math.min(fromIndex, size());
+        toIndex = Math.max(fromIndex, toIndex);
+        return new ArrayMap<>(keys.slice(fromIndex, toIndex), values.subList(fromIndex, toIndex));
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return keys.comparator();
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        if (compare(comparator(), fromKey, toKey) > 0) {
+            throw new IllegalArgumentException("SubMap: fromKey > toKey");
+        }
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    @Override
+    public K firstKey() {
+        return keys.first();
+    }
+
+    @Override
+    public K lastKey() {
+        return keys.last();
+    }
+
+    @Override
+    public int size() {
+        return keys.size();
+    }
+}
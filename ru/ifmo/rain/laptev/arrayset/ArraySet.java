@@ -1,9 +1,12 @@
 package ru.ifmo.rain.laptev.arrayset;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 
 public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+    private static final int GALLOP_RATIO = 8;
+
     private final ReversibleList<E> elements;
     private final Comparator<? super E> comparator;
 
@@ -13,15 +16,16 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     public ArraySet(final Collection<E> elements, Comparator<? super E> comparator) {
+        this(elements, comparator, SearchLayout.BINARY);
+    }
+
+    public ArraySet(final Collection<E> elements, Comparator<? super E> comparator, final SearchLayout layout) {
         this.comparator = comparator;
         if (!isSorted(elements)) {
-            Set<E> sortedElements = new TreeSet<>(comparator);
-            sortedElements.addAll(elements);
-            this.elements = new ReversibleList<>(sortedElements);
+            this.elements = new ReversibleList<>(sortedDistinct(elements), layout, comparator);
         } else {
-            this.elements = new ReversibleList<>(elements);
+            this.elements = new ReversibleList<>(new ArrayList<>(elements), layout, comparator);
         }
-
     }
 
     public ArraySet(final Collection<E> elements) {
@@ -33,7 +37,7 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         this.elements = new ReversibleList<>();
     }
 
-    private ArraySet(final ReversibleList<E> elements, Comparator<? super E> comparator) {
+    ArraySet(final ReversibleList<E> elements, Comparator<? super E> comparator) {
         this.comparator = comparator;
         this.elements = elements;
     }
@@ -49,15 +53,33 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         return true;
     }
 
+    /**
+     * Sorts elements on all cores and removes duplicates in place, keeping the first of equal elements as TreeSet does.
+     */
+    private List<E> sortedDistinct(final Collection<E> elements) {
+        final E[] array = (E[]) elements.toArray();
+        Arrays.parallelSort(array, comparator);
+        int distinct = 0;
+        for (int i = 0; i < array.length; i++) {
+            if (distinct == 0 || compare(array[distinct - 1], array[i]) != 0) {
+                array[distinct++] = array[i];
+            }
+        }
+        return Arrays.asList(distinct == array.length ? array : Arrays.copyOf(array, distinct));
+    }
+
     private int compare(E first, E second) {
         return comparator == null ? ((Comparable) first).compareTo(second) : comparator.compare(first, second);
     }
 
     private int binarySearch(E element) {
+        if (elements.index != null) {
+            return elements.search(element);
+        }
         return Collections.binarySearch(elements, element, comparator);
     }
 
-    private int getIndex(E elementToFind, int shiftIfFound, int shiftIfNotFound) {
+    int getIndex(E elementToFind, int shiftIfFound, int shiftIfNotFound) {
         int index = binarySearch(elementToFind);
         if (index >= 0) {
             index += shiftIfFound;
@@ -77,16 +99,101 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
 
     @Override
     public boolean contains(Object element) {
+        return indexOf(element) >= 0;
+    }
+
+    // Binary search result, -1 for null and elements of other types
+    int indexOf(Object element) {
         if (element == null) {
-            return false;
+            return -1;
         }
         try {
-            return binarySearch((E) element) >= 0;
+            return binarySearch((E) element);
+        } catch (ClassCastException e) {
+            return -1;
+        }
+    }
+
+    E get(int index) {
+        return elements.get(index);
+    }
+
+    /**
+     * Searches elements of sorted sets with the same comparator by galloping, see {@link #containsAll(Object[])}.
+     */
+    @Override
+    public boolean containsAll(Collection<?> other) {
+        if (!(other instanceof SortedSet) || !Objects.equals(comparator, ((SortedSet<?>) other).comparator())) {
+            return super.containsAll(other);
+        }
+        try {
+            return containsAll((E[]) other.toArray());
         } catch (ClassCastException e) {
             return false;
         }
     }
 
+    /**
+     * Returns whether the set contains all the probes. Probes in the order of this set are searched by galloping
+     * from the position of the previous one, so {@code m} probes take {@code O(m log(n / m))} comparisons.
+     * Probes in other orders give the same results slower.
+     */
+    public boolean containsAll(E[] probes) {
+        int position = 0;
+        for (int i = 0; i < probes.length; i++) {
+            if (probes[i] == null) {
+                return false;
+            }
+            position = gallopFrom(probes, i, position);
+            if (position == size() || compare(elements.get(position), probes[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores {@link #ceiling} of every probe into {@code result}, searching as {@link #containsAll(Object[])} does.
+     */
+    public void ceilingAll(E[] probes, E[] result) {
+        checkBatch(probes, result);
+        int position = 0;
+        for (int i = 0; i < probes.length; i++) {
+            position = gallopFrom(probes, i, position);
+            result[i] = position < size() ? elements.get(position) : null;
+        }
+    }
+
+    /**
+     * Stores {@link #floor} of every probe into {@code result}, searching as {@link #containsAll(Object[])} does.
+     */
+    public void floorAll(E[] probes, E[] result) {
+        checkBatch(probes, result);
+        int position = 0;
+        for (int i = 0; i < probes.length; i++) {
+            position = gallopFrom(probes, i, position);
+            if (position < size() && compare(elements.get(position), probes[i]) == 0) {
+                result[i] = elements.get(position);
+            } else {
+                result[i] = position > 0 ? elements.get(position - 1) : null;
+            }
+        }
+    }
+
+    private static void checkBatch(Object[] probes, Object[] result) {
+        if (result.length < probes.length) {
+            throw new IllegalArgumentException("Result array is shorter than probes: " + result.length + " < " + probes.length);
+        }
+    }
+
+    // Index of the first element not less than the probe, galloping from the previous probe unless it is greater
+    private int gallopFrom(E[] probes, int i, int position) {
+        if (i > 0 && compare(probes[i - 1], probes[i]) > 0) {
+            position = 0;
+        }
+        return gallop(elements, position, probes[i]);
+    }
+
     @Override
     public E lower(E e) {
         return findWithShifts(e, -1, -1);
@@ -123,7 +230,12 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     @Override
-    public NavigableSet<E> descendingSet() {
+    public Spliterator<E> spliterator() {
+        return new IndexSpliterator<>(elements, 0, size(), comparator);
+    }
+
+    @Override
+    public ArraySet<E> descendingSet() {
         return new ArraySet<>(elements.getDescendingList(), Collections.reverseOrder(comparator));
     }
 
@@ -133,17 +245,21 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     @Override
-    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+    public ArraySet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
         int left = getIndex(fromElement, fromInclusive ? 0 : 1, 0);
         int right = getIndex(toElement, toInclusive ? 0 : -1, -1);
         if (left > right || left >= size() || right < 0) {
             return new ArraySet<>(new ReversibleList<>(), comparator);
         }
-        return new ArraySet<>(elements.subList(left, right + 1), comparator);
+        return slice(left, right + 1);
+    }
+
+    ArraySet<E> slice(int fromIndex, int toIndex) {
+        return new ArraySet<>(elements.subList(fromIndex, toIndex), comparator);
     }
 
     @Override
-    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+    public ArraySet<E> headSet(E toElement, boolean inclusive) {
         if (isEmpty()) {
             return new ArraySet<>(new ReversibleList<>(), comparator);
         }
@@ -151,7 +267,7 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     @Override
-    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+    public ArraySet<E> tailSet(E fromElement, boolean inclusive) {
         if (isEmpty()) {
             return new ArraySet<>(new ReversibleList<>(), comparator);
         }
@@ -164,7 +280,7 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     @Override
-    public SortedSet<E> subSet(E fromElement, E toElement) {
+    public ArraySet<E> subSet(E fromElement, E toElement) {
         if (compare(fromElement, toElement) > 0) {
             throw new IllegalArgumentException("Subset: fromElement > toElement");
         }
@@ -172,12 +288,12 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     @Override
-    public SortedSet<E> headSet(E toElement) {
+    public ArraySet<E> headSet(E toElement) {
         return headSet(toElement, false);
     }
 
     @Override
-    public SortedSet<E> tailSet(E fromElement) {
+    public ArraySet<E> tailSet(E fromElement) {
         return tailSet(fromElement, true);
     }
 
@@ -202,32 +318,276 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         return elements.size();
     }
 
-    private static class ReversibleList<E> extends AbstractList<E> implements RandomAccess {
+    /**
+     * Returns number of elements less than the given one in the order of this set.
+     */
+    public int rank(E element) {
+        return getIndex(element, 0, 0);
+    }
+
+    /**
+     * Returns the element with the given rank.
+     */
+    public E select(int rank) {
+        if (rank < 0 || rank >= size()) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " is out of bounds for size " + size());
+        }
+        return elements.get(rank);
+    }
+
+    /**
+     * Returns size of {@code subSet(fromElement, fromInclusive, toElement, toInclusive)} without creating it.
+     */
+    public int countInRange(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        int left = getIndex(fromElement, fromInclusive ? 0 : 1, 0);
+        int right = getIndex(toElement, toInclusive ? 0 : -1, -1);
+        return Math.max(0, right - left + 1);
+    }
+
+    /**
+     * Returns set of elements of this set or the given collection, ordered by the comparator of this set.
+     * Merges in linear time if the collection is an {@code ArraySet} with the same comparator.
+     */
+    public ArraySet<E> union(final Collection<? extends E> other) {
+        if (!isMergeable(other)) {
+            final List<E> all = new ArrayList<>(this);
+            all.addAll(other);
+            return new ArraySet<>(all, comparator, layout());
+        }
+        final ReversibleList<E> first = elements;
+        final ReversibleList<E> second = ((ArraySet<E>) other).elements;
+        final List<E> result = new ArrayList<>(first.size() + second.size());
+        if (isSkewed(first, second) || isSkewed(second, first)) {
+            final ReversibleList<E> small = first.size() < second.size() ? first : second;
+            final ReversibleList<E> large = small == first ? second : first;
+            int j = 0;
+            for (E element : small) {
+                final int k = gallop(large, j, element);
+                copy(large, j, k, result);
+                final boolean equal = k < large.size() && compare(large.get(k), element) == 0;
+                result.add(equal && small == second ? large.get(k) : element);
+                j = equal ? k + 1 : k;
+            }
+            copy(large, j, large.size(), result);
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < first.size() && j < second.size()) {
+                final int compared = compare(first.get(i), second.get(j));
+                result.add(compared <= 0 ? first.get(i) : second.get(j));
+                i += compared <= 0 ? 1 : 0;
+                j += compared >= 0 ? 1 : 0;
+            }
+            copy(first, i, first.size(), result);
+            copy(second, j, second.size(), result);
+        }
+        return merged(result);
+    }
+
+    /**
+     * Returns set of elements of this set contained in the given collection, ordered by the comparator of this set.
+     * Merges in linear time if the collection is an {@code ArraySet} with the same comparator.
+     */
+    public ArraySet<E> intersection(final Collection<?> other) {
+        if (!isMergeable(other)) {
+            return filter(other, true);
+        }
+        final ReversibleList<E> first = elements;
+        final ReversibleList<E> second = ((ArraySet<E>) other).elements;
+        final ReversibleList<E> small = first.size() < second.size() ? first : second;
+        final ReversibleList<E> large = small == first ? second : first;
+        final List<E> result = new ArrayList<>(small.size());
+        if (isSkewed(small, large)) {
+            int j = 0;
+            for (E element : small) {
+                j = gallop(large, j, element);
+                if (j < large.size() && compare(large.get(j), element) == 0) {
+                    result.add(small == first ? element : large.get(j));
+                }
+            }
+            return merged(result);
+        }
+        int i = 0;
+        int j = 0;
+        while (i < first.size() && j < second.size()) {
+            final int compared = compare(first.get(i), second.get(j));
+            if (compared == 0) {
+                result.add(first.get(i));
+            }
+            i += compared <= 0 ? 1 : 0;
+            j += compared >= 0 ? 1 : 0;
+        }
+        return merged(result);
+    }
+
+    /**
+     * Returns set of elements of this set not contained in the given collection, ordered by the comparator of this set.
+     * Merges in linear time if the collection is an {@code ArraySet} with the same comparator.
+     */
+    public ArraySet<E> difference(final Collection<?> other) {
+        if (!isMergeable(other)) {
+            return filter(other, false);
+        }
+        final ReversibleList<E> first = elements;
+        final ReversibleList<E> second = ((ArraySet<E>) other).elements;
+        final List<E> result = new ArrayList<>(first.size());
+        if (isSkewed(second, first)) {
+            int i = 0;
+            for (E element : second) {
+                final int k = gallop(first, i, element);
+                copy(first, i, k, result);
+                i = k < first.size() && compare(first.get(k), element) == 0 ? k + 1 : k;
+            }
+            copy(first, i, first.size(), result);
+        } else if (isSkewed(first, second)) {
+            int j = 0;
+            for (E element : first) {
+                j = gallop(second, j, element);
+                if (j == second.size() || compare(second.get(j), element) != 0) {
+                    result.add(element);
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < first.size() && j < second.size()) {
+                final int compared = compare(first.get(i), second.get(j));
+                if (compared < 0) {
+                    result.add(first.get(i));
+                }
+                i += compared <= 0 ? 1 : 0;
+                j += compared >= 0 ? 1 : 0;
+            }
+            copy(first, i, first.size(), result);
+        }
+        return merged(result);
+    }
+
+    private boolean isMergeable(final Collection<?> other) {
+        return other instanceof ArraySet && Objects.equals(comparator, ((ArraySet<?>) other).comparator);
+    }
+
+    private ArraySet<E> filter(final Collection<?> other, final boolean contained) {
+        final List<E> result = new ArrayList<>();
+        for (E element : elements) {
+            if (other.contains(element) == contained) {
+                result.add(element);
+            }
+        }
+        return merged(result);
+    }
+
+    private SearchLayout layout() {
+        return elements.index == null ? SearchLayout.BINARY : SearchLayout.EYTZINGER;
+    }
+
+    // Result is sorted and distinct, so it is used without copying
+    private ArraySet<E> merged(final List<E> result) {
+        final EytzingerIndex<E> index = elements.index == null ? null : new EytzingerIndex<>(result, comparator);
+        return new ArraySet<>(new ReversibleList<>(result, false, index, 0), comparator);
+    }
+
+    // Galloping pays off when every element of the small list skips many elements of the large one
+    private static boolean isSkewed(final List<?> small, final List<?> large) {
+        return small.size() * GALLOP_RATIO < large.size();
+    }
+
+    /**
+     * Returns the first index not less than {@code from} with element not less than the given one,
+     * probing at exponentially growing distances first.
+     */
+    private int gallop(final ReversibleList<E> list, final int from, final E element) {
+        int left = from;
+        int step = 1;
+        while (left + step - 1 < list.size() && compare(list.get(left + step - 1), element) < 0) {
+            left += step;
+            step <<= 1;
+        }
+        int right = Math.min(list.size(), left + step - 1);
+        while (left < right) {
+            final int middle = (left + right) >>> 1;
+            if (compare(list.get(middle), element) < 0) {
+                left = middle + 1;
+            } else {
+                right = middle;
+            }
+        }
+        return left;
+    }
+
+    private static <E> void copy(final ReversibleList<E> list, final int from, final int to, final List<E> result) {
+        for (int i = from; i < to; i++) {
+            result.add(list.get(i));
+        }
+    }
+
+    /**
+     * Layout of the elements used by {@link #contains}, {@link #lower}, {@link #floor}, {@link #ceiling},
+     * {@link #higher} and subsets. Iteration and views are the same for all layouts.
+     */
+    public enum SearchLayout {
+        /**
+         * Binary search over the sorted elements.
+         */
+        BINARY,
+        /**
+         * Search over a copy of the elements in Eytzinger (breadth-first) order, shared by all views.
+         * The first levels of the implicit tree fill a few cache lines that stay cached between lookups,
+         * and a probe doesn't depend on the direction of the view.
+         * Takes {@code 8} more bytes per element with compressed references.
+         */
+        EYTZINGER
+    }
+
+    static class ReversibleList<E> extends AbstractList<E> implements RandomAccess {
         private List<E> elements;
         private boolean isReversed;
+        // Index over the whole set, elements are its range starting at from
+        private EytzingerIndex<E> index;
+        private int from;
 
-        private ReversibleList(Collection<E> collection) {
-            this.elements = new ArrayList<>(collection);
+        ReversibleList(List<E> elements, SearchLayout layout, Comparator<? super E> comparator) {
+            this.elements = elements;
+            if (layout == SearchLayout.EYTZINGER) {
+                this.index = new EytzingerIndex<>(elements, comparator);
+            }
         }
 
-        private ReversibleList() {
+        ReversibleList() {
             this.elements = new ArrayList<>();
             this.isReversed = false;
         }
 
-
-        private ReversibleList(List<E> elements, boolean isReversed) {
+        private ReversibleList(List<E> elements, boolean isReversed, EytzingerIndex<E> index, int from) {
             this.elements = elements;
             this.isReversed = isReversed;
+            this.index = index;
+            this.from = from;
         }
 
-        private ReversibleList<E> getDescendingList() {
-            return new ReversibleList<>(elements, !isReversed);
+        ReversibleList<E> getDescendingList() {
+            return new ReversibleList<>(elements, !isReversed, index, from);
         }
 
         @Override
         public ReversibleList<E> subList(int fromIndex, int toIndex) {
-            return new ReversibleList<>(elements.subList(fromIndex, toIndex), isReversed);
+            if (isReversed) {
+                final int start = size() - toIndex;
+                return new ReversibleList<>(elements.subList(start, size() - fromIndex), true, index, from + start);
+            }
+            return new ReversibleList<>(elements.subList(fromIndex, toIndex), false, index, from + fromIndex);
+        }
+
+        // Same result as Collections.binarySearch over this list
+        private int search(E element) {
+            final int found = index.search(element);
+            final int position = found >= 0 ? found : -found - 1;
+            final int size = size();
+            if (found >= 0 && position >= from && position < from + size) {
+                return isReversed ? from + size - 1 - position : position - from;
+            }
+            final int insertion = Math.min(Math.max(position, from), from + size) - from;
+            return -(isReversed ? size - insertion : insertion) - 1;
         }
 
         @Override
@@ -244,4 +604,110 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         }
     }
 
+    /**
+     * Spliterator over a range of list indices, splitting it exactly in half.
+     */
+    private static class IndexSpliterator<E> implements Spliterator<E> {
+        private final ReversibleList<E> elements;
+        private final Comparator<? super E> comparator;
+        private final int to;
+        private int from;
+
+        private IndexSpliterator(ReversibleList<E> elements, int from, int to, Comparator<? super E> comparator) {
+            this.elements = elements;
+            this.comparator = comparator;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            if (from >= to) {
+                return false;
+            }
+            action.accept(elements.get(from++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            final int start = from;
+            from = to;
+            for (int i = start; i < to; i++) {
+                action.accept(elements.get(i));
+            }
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            final int middle = (from + to) >>> 1;
+            if (middle <= from) {
+                return null;
+            }
+            final Spliterator<E> prefix = new IndexSpliterator<>(elements, from, middle, comparator);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return SIZED | SUBSIZED | SORTED | DISTINCT | ORDERED | IMMUTABLE;
+        }
+
+        @Override
+        public Comparator<? super E> getComparator() {
+            return comparator;
+        }
+    }
+
+    private static class EytzingerIndex<E> {
+        private final Comparator<? super E> comparator;
+        // Node k has children 2k and 2k + 1, the root is 1
+        private final Object[] tree;
+        private final int[] ranks;
+
+        private EytzingerIndex(List<E> sorted, Comparator<? super E> comparator) {
+            this.comparator = comparator;
+            this.tree = new Object[sorted.size() + 1];
+            this.ranks = new int[sorted.size() + 1];
+            fill(sorted, 0, 1);
+        }
+
+        // Fills the subtree of node k in order with sorted elements starting from i
+        private int fill(List<E> sorted, int i, int k) {
+            if (k < tree.length) {
+                i = fill(sorted, i, 2 * k);
+                tree[k] = sorted.get(i);
+                ranks[k] = i;
+                i = fill(sorted, i + 1, 2 * k + 1);
+            }
+            return i;
+        }
+
+        private int compare(Object first, E second) {
+            return comparator == null ? ((Comparable) first).compareTo(second) : comparator.compare((E) first, second);
+        }
+
+        // Same result as binary search over the sorted elements
+        private int search(E element) {
+            int k = 1;
+            while (k < tree.length) {
+                final int compared = compare(tree[k], element);
+                if (compared == 0) {
+                    return ranks[k];
+                }
+                k = 2 * k + (compared < 0 ? 1 : 0);
+            }
+            // Drops the right turns taken after the last left one, which went to the least greater element
+            k >>= Integer.numberOfTrailingZeros(~k) + 1;
+            return k == 0 ? -tree.length : -ranks[k] - 1;
+        }
+    }
 }
\ No newline at end of file
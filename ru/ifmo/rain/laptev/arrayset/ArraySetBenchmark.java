@@ -0,0 +1,136 @@
+package ru.ifmo.rain.laptev.arrayset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+
+/**
+ * Benchmarks lookups of {@link ArraySet} with each {@link ArraySet.SearchLayout} on sets of growing size.
+ * Elements are even integers allocated in random order, so they are spread over the heap as in a long-lived set,
+ * and half of the queries are present. Each case is run for the warmup iterations first, then mean and deviation
+ * of the time per lookup over the measured iterations are reported.
+ */
+class ArraySetBenchmark {
+    private static final long SEED = 0x41525253L;
+    private static final int QUERIES = 1 << 20;
+
+    private final int warmup;
+    private final int iterations;
+    private final int maxSize;
+    private int sink;
+
+    private ArraySetBenchmark(final int warmup, final int iterations, final int maxSize) {
+        this.warmup = warmup;
+        this.iterations = iterations;
+        this.maxSize = maxSize;
+    }
+
+    public static void main(final String[] args) {
+        int warmup = 3;
+        int iterations = 5;
+        int maxSize = 1 << 23;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--warmup":
+                        warmup = Integer.parseInt(args[++i]);
+                        break;
+                    case "--iterations":
+                        iterations = Integer.parseInt(args[++i]);
+                        break;
+                    case "--max-size":
+                        maxSize = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException();
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Usage [--warmup count] [--iterations count] [--max-size elements]");
+            return;
+        }
+        if (warmup < 0 || iterations <= 0 || maxSize <= 0) {
+            System.err.println("Iterations and size must be positive");
+            return;
+        }
+        new ArraySetBenchmark(warmup, iterations, maxSize).run();
+    }
+
+    private void run() {
+        System.out.printf("%-10s %-10s %-10s %-10s %10s %10s%n", "size", "layout", "view", "query", "ns/op", "+-");
+        final Random random = new Random(SEED);
+        for (int size = Math.min(1 << 11, maxSize); ; size = (int) Math.min(8L * size, maxSize)) {
+            final int[] values = new int[size];
+            for (int i = 0; i < size; i++) {
+                final int j = random.nextInt(i + 1);
+                values[i] = values[j];
+                values[j] = 2 * i;
+            }
+            final List<Integer> elements = new ArrayList<>(size);
+            for (int value : values) {
+                elements.add(value);
+            }
+            final Integer[] queries = new Integer[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                queries[i] = random.nextInt(2 * size);
+            }
+            for (ArraySet.SearchLayout layout : ArraySet.SearchLayout.values()) {
+                final ArraySet<Integer> set = new ArraySet<>(elements, null, layout);
+                measure(size, layout, "ascending", set, queries);
+                measure(size, layout, "descending", set.descendingSet(), queries);
+            }
+            if (size == maxSize) {
+                break;
+            }
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private void measure(final int size, final ArraySet.SearchLayout layout, final String view,
+                         final NavigableSet<Integer> set, final Integer[] queries) {
+        for (String query : new String[]{"contains", "ceiling"}) {
+            final boolean contains = query.equals("contains");
+            for (int i = 0; i < warmup; i++) {
+                lookups(set, queries, contains);
+            }
+            final double[] nanos = new double[iterations];
+            for (int i = 0; i < iterations; i++) {
+                final long start = System.nanoTime();
+                lookups(set, queries, contains);
+                nanos[i] = (double) (System.nanoTime() - start) / queries.length;
+            }
+            System.out.printf("%-10d %-10s %-10s %-10s %10.1f %10.1f%n", size, layout.name().toLowerCase(), view, query,
+                    mean(nanos), deviation(nanos));
+        }
+    }
+
+    private void lookups(final NavigableSet<Integer> set, final Integer[] queries, final boolean contains) {
+        int found = 0;
+        for (Integer query : queries) {
+            if (contains ? set.contains(query) : set.ceiling(query) != null) {
+                found++;
+            }
+        }
+        sink += found;
+    }
+
+    private static double mean(final double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    private static double deviation(final double[] values) {
+        final double mean = mean(values);
+        double sum = 0;
+        for (double value : values) {
+            sum += (value - mean) * (value - mean);
+        }
+        return Math.sqrt(sum / values.length);
+    }
+}
@@ -0,0 +1,472 @@
+package ru.ifmo.rain.laptev.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable {@link NavigableSet} of strings in natural order, stored front-coded in one byte array.
+ * Strings are grouped into blocks of {@value #BLOCK_SIZE}: the first string of a block is stored whole,
+ * the others as the length of the prefix shared with the previous string and the rest of the bytes.
+ * A lookup binary searches the block heads and scans one block; strings are decoded only when returned.
+ * Views share the storage the same way {@link LongArraySet} views do.
+ *
+ * <p>Chars are encoded one by one as in UTF-8, {@code '\0'} being a single zero byte, so unsigned byte order
+ * is the order of {@link String#compareTo} and no lookup decodes stored strings.
+ */
+public class FrontCodedStringSet extends AbstractSet<String> implements NavigableSet<String> {
+    private static final int BLOCK_SIZE = 16;
+
+    private final ReversibleStrings elements;
+
+    public FrontCodedStringSet() {
+        this(Collections.emptyList());
+    }
+
+    public FrontCodedStringSet(final Collection<String> elements) {
+        final String[] array = elements.toArray(new String[0]);
+        Arrays.parallelSort(array);
+        int size = 0;
+        for (int i = 0; i < array.length; i++) {
+            if (i == 0 || !array[i].equals(array[size - 1])) {
+                array[size++] = array[i];
+            }
+        }
+        final Storage storage = new Storage(array, size);
+        this.elements = new ReversibleStrings(storage, 0, size, false);
+    }
+
+    private FrontCodedStringSet(final ReversibleStrings elements) {
+        this.elements = elements;
+    }
+
+    @Override
+    public boolean contains(final Object element) {
+        return element instanceof String && elements.search((String) element) >= 0;
+    }
+
+    @Override
+    public String lower(final String element) {
+        return find(elements.isReversed ? elements.higher(element) : elements.lower(element));
+    }
+
+    @Override
+    public String floor(final String element) {
+        return find(elements.isReversed ? elements.ceiling(element) : elements.floor(element));
+    }
+
+    @Override
+    public String ceiling(final String element) {
+        return find(elements.isReversed ? elements.floor(element) : elements.ceiling(element));
+    }
+
+    @Override
+    public String higher(final String element) {
+        return find(elements.isReversed ? elements.lower(element) : elements.higher(element));
+    }
+
+    private String find(final int index) {
+        return elements.contains(index) ? elements.storage.get(index) : null;
+    }
+
+    @Override
+    public String pollFirst() {
+        throw new UnsupportedOperationException("pollFirst is unsupported");
+    }
+
+    @Override
+    public String pollLast() {
+        throw new UnsupportedOperationException("pollLast is unsupported");
+    }
+
+    /**
+     * Decodes a block at a time, so a string costs amortized {@code O(1)} in both directions.
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<>() {
+            private final String[] block = new String[BLOCK_SIZE];
+            private int blockIndex = -1;
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final int absolute = elements.absolute(index++);
+                if (absolute / BLOCK_SIZE != blockIndex) {
+                    blockIndex = absolute / BLOCK_SIZE;
+                    elements.storage.decodeBlock(blockIndex, block);
+                }
+                return block[absolute % BLOCK_SIZE];
+            }
+        };
+    }
+
+    @Override
+    public FrontCodedStringSet descendingSet() {
+        return new FrontCodedStringSet(elements.getDescendingList());
+    }
+
+    @Override
+    public Iterator<String> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public FrontCodedStringSet subSet(String fromElement, boolean fromInclusive, String toElement, boolean toInclusive) {
+        if (elements.isReversed) {
+            return slice(toInclusive ? elements.ceiling(toElement) : elements.higher(toElement),
+                    (fromInclusive ? elements.floor(fromElement) : elements.lower(fromElement)) + 1);
+        }
+        return slice(fromInclusive ? elements.ceiling(fromElement) : elements.higher(fromElement),
+                (toInclusive ? elements.floor(toElement) : elements.lower(toElement)) + 1);
+    }
+
+    @Override
+    public FrontCodedStringSet headSet(String toElement, boolean inclusive) {
+        if (elements.isReversed) {
+            return slice(inclusive ? elements.ceiling(toElement) : elements.higher(toElement), elements.to);
+        }
+        return slice(elements.from, (inclusive ? elements.floor(toElement) : elements.lower(toElement)) + 1);
+    }
+
+    @Override
+    public FrontCodedStringSet tailSet(String fromElement, boolean inclusive) {
+        if (elements.isReversed) {
+            return slice(elements.from, (inclusive ? elements.floor(fromElement) : elements.lower(fromElement)) + 1);
+        }
+        return slice(inclusive ? elements.ceiling(fromElement) : elements.higher(fromElement), elements.to);
+    }
+
+    private FrontCodedStringSet slice(final int from, final int to) {
+        return new FrontCodedStringSet(elements.subRange(from, Math.max(from, to)));
+    }
+
+    @Override
+    public Comparator<? super String> comparator() {
+        return elements.isReversed ? Collections.reverseOrder() : null;
+    }
+
+    @Override
+    public FrontCodedStringSet subSet(String fromElement, String toElement) {
+        if (fromElement.compareTo(toElement) * (elements.isReversed ? -1 : 1) > 0) {
+            throw new IllegalArgumentException("Subset: fromElement > toElement");
+        }
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public FrontCodedStringSet headSet(String toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public FrontCodedStringSet tailSet(String fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public String first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("No first element, set is empty");
+        }
+        return elements.storage.get(elements.absolute(0));
+    }
+
+    @Override
+    public String last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("No last element, set is empty");
+        }
+        return elements.storage.get(elements.absolute(size() - 1));
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    /**
+     * Range {@code [from, to)} of the stored strings, read backwards if reversed.
+     * Searches return indices into the whole storage in ascending order.
+     */
+    private static class ReversibleStrings {
+        private final Storage storage;
+        private final int from;
+        private final int to;
+        private final boolean isReversed;
+
+        private ReversibleStrings(final Storage storage, final int from, final int to, final boolean isReversed) {
+            this.storage = storage;
+            this.from = from;
+            this.to = to;
+            this.isReversed = isReversed;
+        }
+
+        private ReversibleStrings getDescendingList() {
+            return new ReversibleStrings(storage, from, to, !isReversed);
+        }
+
+        private ReversibleStrings subRange(final int from, final int to) {
+            return new ReversibleStrings(storage, from, to, isReversed);
+        }
+
+        private int absolute(final int index) {
+            return isReversed ? to - 1 - index : from + index;
+        }
+
+        private int size() {
+            return to - from;
+        }
+
+        private boolean contains(final int index) {
+            return from <= index && index < to;
+        }
+
+        // Same result as Arrays.binarySearch over the range
+        private int search(final String element) {
+            final int found = storage.search(encode(element));
+            final int position = found >= 0 ? found : -found - 1;
+            if (found >= 0 && contains(position)) {
+                return position;
+            }
+            return -Math.min(Math.max(position, from), to) - 1;
+        }
+
+        private int lower(final String element) {
+            final int index = search(element);
+            return index >= 0 ? index - 1 : -index - 2;
+        }
+
+        private int floor(final String element) {
+            final int index = search(element);
+            return index >= 0 ? index : -index - 2;
+        }
+
+        private int ceiling(final String element) {
+            final int index = search(element);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        private int higher(final String element) {
+            final int index = search(element);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+    }
+
+    /**
+     * Front-coded blocks and offsets of their first strings.
+     */
+    private static class Storage {
+        private final byte[] data;
+        private final int[] blocks;
+        private final int size;
+        private final int maxLength;
+        // Bytes of the string being decoded, one buffer per thread instead of one per decoded string
+        private final ThreadLocal<byte[]> scratch;
+
+        private Storage(final String[] sorted, final int size) {
+            this.size = size;
+            this.blocks = new int[(size + BLOCK_SIZE - 1) / BLOCK_SIZE];
+            byte[] data = new byte[64];
+            int length = 0;
+            int maxLength = 0;
+            byte[] previous = null;
+            for (int i = 0; i < size; i++) {
+                final byte[] bytes = encode(sorted[i]);
+                maxLength = Math.max(maxLength, bytes.length);
+                int prefix = 0;
+                if (i % BLOCK_SIZE == 0) {
+                    blocks[i / BLOCK_SIZE] = length;
+                } else {
+                    prefix = Arrays.mismatch(previous, bytes);
+                }
+                if (length + 10 + bytes.length - prefix > data.length) {
+                    data = Arrays.copyOf(data, Math.max(2 * data.length, length + 10 + bytes.length - prefix));
+                }
+                if (i % BLOCK_SIZE != 0) {
+                    length = writeVarint(data, length, prefix);
+                }
+                length = writeVarint(data, length, bytes.length - prefix);
+                System.arraycopy(bytes, prefix, data, length, bytes.length - prefix);
+                length += bytes.length - prefix;
+                previous = bytes;
+            }
+            this.data = Arrays.copyOf(data, length);
+            this.maxLength = maxLength;
+            this.scratch = ThreadLocal.withInitial(() -> new byte[this.maxLength]);
+        }
+
+        private String get(final int index) {
+            final Cursor cursor = new Cursor(index / BLOCK_SIZE);
+            for (int i = 0; i < index % BLOCK_SIZE; i++) {
+                cursor.next();
+            }
+            return cursor.decode();
+        }
+
+        private void decodeBlock(final int block, final String[] strings) {
+            final Cursor cursor = new Cursor(block);
+            final int count = Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE);
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    cursor.next();
+                }
+                strings[i] = cursor.decode();
+            }
+        }
+
+        // Same result as Arrays.binarySearch over all strings
+        private int search(final byte[] key) {
+            int left = 0;
+            int right = blocks.length - 1;
+            int block = -1;
+            while (left <= right) {
+                final int middle = (left + right) >>> 1;
+                int position = blocks[middle];
+                final int length = readVarint(position);
+                position = skipVarint(position);
+                if (Arrays.compareUnsigned(data, position, position + length, key, 0, key.length) <= 0) {
+                    block = middle;
+                    left = middle + 1;
+                } else {
+                    right = middle - 1;
+                }
+            }
+            if (block < 0) {
+                return -1;
+            }
+            // Strings of the block before the current one are less than the key and share common bytes with it
+            final int start = block * BLOCK_SIZE;
+            final int end = Math.min(size, start + BLOCK_SIZE);
+            int position = blocks[block];
+            int common = 0;
+            for (int index = start; index < end; index++) {
+                int prefix = 0;
+                if (index > start) {
+                    prefix = readVarint(position);
+                    position = skipVarint(position);
+                }
+                final int suffix = readVarint(position);
+                position = skipVarint(position);
+                if (prefix < common) {
+                    // Greater than the previous string at byte prefix, where that one matched the key
+                    return -index - 1;
+                }
+                if (prefix == common) {
+                    final int mismatch = Arrays.mismatch(data, position, position + suffix, key, prefix, key.length);
+                    if (mismatch < 0) {
+                        return index;
+                    }
+                    if (mismatch < suffix && (prefix + mismatch == key.length
+                            || (data[position + mismatch] & 0xff) > (key[prefix + mismatch] & 0xff))) {
+                        return -index - 1;
+                    }
+                    common = prefix + mismatch;
+                }
+                position += suffix;
+            }
+            return -end - 1;
+        }
+
+        private int readVarint(final int position) {
+            int value = 0;
+            for (int shift = 0, i = position; ; shift += 7, i++) {
+                value |= (data[i] & 0x7f) << shift;
+                if (data[i] >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        private int skipVarint(int position) {
+            while (data[position] < 0) {
+                position++;
+            }
+            return position + 1;
+        }
+
+        private static int writeVarint(final byte[] data, int position, int value) {
+            while ((value & ~0x7f) != 0) {
+                data[position++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            data[position++] = (byte) value;
+            return position;
+        }
+
+        /**
+         * Reads strings of one block into the scratch buffer of the thread,
+         * the bytes of the current string are reused by the following ones.
+         */
+        private class Cursor {
+            private final byte[] bytes = scratch.get();
+            private int position;
+            private int length;
+
+            private Cursor(final int block) {
+                position = blocks[block];
+                read(0);
+            }
+
+            private void next() {
+                final int prefix = readVarint(position);
+                position = skipVarint(position);
+                read(prefix);
+            }
+
+            private void read(final int prefix) {
+                final int suffix = readVarint(position);
+                position = skipVarint(position);
+                System.arraycopy(data, position, bytes, prefix, suffix);
+                position += suffix;
+                length = prefix + suffix;
+            }
+
+            private String decode() {
+                final char[] chars = new char[length];
+                int count = 0;
+                for (int i = 0; i < length; i++) {
+                    final int b = bytes[i] & 0xff;
+                    if (b < 0x80) {
+                        chars[count++] = (char) b;
+                    } else if (b < 0xe0) {
+                        chars[count++] = (char) ((b & 0x1f) << 6 | bytes[++i] & 0x3f);
+                    } else {
+                        chars[count++] = (char) ((b & 0x0f) << 12 | (bytes[++i] & 0x3f) << 6 | bytes[++i] & 0x3f);
+                    }
+                }
+                return new String(chars, 0, count);
+            }
+        }
+    }
+
+    private static byte[] encode(final String string) {
+        int length = 0;
+        for (int i = 0; i < string.length(); i++) {
+            final char c = string.charAt(i);
+            length += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        final byte[] bytes = new byte[length];
+        int position = 0;
+        for (int i = 0; i < string.length(); i++) {
+            final char c = string.charAt(i);
+            if (c < 0x80) {
+                bytes[position++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xc0 | c >> 6);
+                bytes[position++] = (byte) (0x80 | c & 0x3f);
+            } else {
+                bytes[position++] = (byte) (0xe0 | c >> 12);
+                bytes[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+                bytes[position++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,357 @@
+package ru.ifmo.rain.laptev.arrayset;
+
+import java.util.*;
+
+/**
+ * {@link NavigableSet} of {@code int} values in natural order, backed by a sorted {@code int[]}.
+ * Views share the array the same way {@link ArraySet} views do. Methods with {@code Int} in their names
+ * take and return primitives and never box.
+ *
+ * <p>Kept identical to {@link LongArraySet} up to the element type, change both files together.
+ */
+public class IntArraySet extends AbstractSet<Integer> implements NavigableSet<Integer> {
+    private final ReversibleIntArray elements;
+
+    public IntArraySet() {
+        this.elements = new ReversibleIntArray(new int[0]);
+    }
+
+    public IntArraySet(final int... elements) {
+        this.elements = new ReversibleIntArray(sortedDistinct(elements.clone()));
+    }
+
+    public IntArraySet(final Collection<Integer> elements) {
+        final int[] array = new int[elements.size()];
+        int size = 0;
+        for (Integer element : elements) {
+            array[size++] = element;
+        }
+        this.elements = new ReversibleIntArray(sortedDistinct(array));
+    }
+
+    private IntArraySet(final ReversibleIntArray elements) {
+        this.elements = elements;
+    }
+
+    private static int[] sortedDistinct(final int[] array) {
+        Arrays.sort(array);
+        int size = 0;
+        for (int i = 0; i < array.length; i++) {
+            if (i == 0 || array[i] != array[size - 1]) {
+                array[size++] = array[i];
+            }
+        }
+        return size == array.length ? array : Arrays.copyOf(array, size);
+    }
+
+    public boolean containsInt(final int element) {
+        return elements.search(element) >= 0;
+    }
+
+    @Override
+    public boolean contains(final Object element) {
+        return element instanceof Integer && containsInt((Integer) element);
+    }
+
+    /**
+     * Greatest element strictly less than the given one.
+     *
+     * @throws NoSuchElementException if there is no such element
+     */
+    public int lowerInt(final int element) {
+        return get(lowerIndex(element));
+    }
+
+    /**
+     * Greatest element less than or equal to the given one.
+     *
+     * @throws NoSuchElementException if there is no such element
+     */
+    public int floorInt(final int element) {
+        return get(floorIndex(element));
+    }
+
+    /**
+     * Least element greater than or equal to the given one.
+     *
+     * @throws NoSuchElementException if there is no such element
+     */
+    public int ceilingInt(final int element) {
+        return get(ceilingIndex(element));
+    }
+
+    /**
+     * Least element strictly greater than the given one.
+     *
+     * @throws NoSuchElementException if there is no such element
+     */
+    public int higherInt(final int element) {
+        return get(higherIndex(element));
+    }
+
+    @Override
+    public Integer lower(final Integer element) {
+        return find(lowerIndex(element));
+    }
+
+    @Override
+    public Integer floor(final Integer element) {
+        return find(floorIndex(element));
+    }
+
+    @Override
+    public Integer ceiling(final Integer element) {
+        return find(ceilingIndex(element));
+    }
+
+    @Override
+    public Integer higher(final Integer element) {
+        return find(higherIndex(element));
+    }
+
+    // Navigation in view order is the opposite navigation in array order for descending views
+    private int lowerIndex(final int element) {
+        return elements.isReversed ? elements.higher(element) : elements.lower(element);
+    }
+
+    private int floorIndex(final int element) {
+        return elements.isReversed ? elements.ceiling(element) : elements.floor(element);
+    }
+
+    private int ceilingIndex(final int element) {
+        return elements.isReversed ? elements.floor(element) : elements.ceiling(element);
+    }
+
+    private int higherIndex(final int element) {
+        return elements.isReversed ? elements.lower(element) : elements.higher(element);
+    }
+
+    private int get(final int index) {
+        if (!elements.contains(index)) {
+            throw new NoSuchElementException("No such element in the set");
+        }
+        return elements.elements[index];
+    }
+
+    private Integer find(final int index) {
+        return elements.contains(index) ? elements.elements[index] : null;
+    }
+
+    @Override
+    public Integer pollFirst() {
+        throw new UnsupportedOperationException("pollFirst is unsupported");
+    }
+
+    @Override
+    public Integer pollLast() {
+        throw new UnsupportedOperationException("pollLast is unsupported");
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return elements.get(index++);
+            }
+        };
+    }
+
+    @Override
+    public IntArraySet descendingSet() {
+        return new IntArraySet(elements.getDescendingList());
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    public IntArraySet subSet(final int fromElement, final boolean fromInclusive,
+                            final int toElement, final boolean toInclusive) {
+        if (elements.isReversed) {
+            return slice(toInclusive ? elements.ceiling(toElement) : elements.higher(toElement),
+                    (fromInclusive ? elements.floor(fromElement) : elements.lower(fromElement)) + 1);
+        }
+        return slice(fromInclusive ? elements.ceiling(fromElement) : elements.higher(fromElement),
+                (toInclusive ? elements.floor(toElement) : elements.lower(toElement)) + 1);
+    }
+
+    public IntArraySet headSet(final int toElement, final boolean inclusive) {
+        if (elements.isReversed) {
+            return slice(inclusive ? elements.ceiling(toElement) : elements.higher(toElement), elements.to);
+        }
+        return slice(elements.from, (inclusive ? elements.floor(toElement) : elements.lower(toElement)) + 1);
+    }
+
+    public IntArraySet tailSet(final int fromElement, final boolean inclusive) {
+        if (elements.isReversed) {
+            return slice(elements.from, (inclusive ? elements.floor(fromElement) : elements.lower(fromElement)) + 1);
+        }
+        return slice(inclusive ? elements.ceiling(fromElement) : elements.higher(fromElement), elements.to);
+    }
+
+    private IntArraySet slice(final int from, final int to) {
+        return new IntArraySet(elements.subArray(from, Math.max(from, to)));
+    }
+
+    @Override
+    public IntArraySet subSet(Integer fromElement, boolean fromInclusive, Integer toElement, boolean toInclusive) {
+        return subSet((int) fromElement, fromInclusive, (int) toElement, toInclusive);
+    }
+
+    @Override
+    public IntArraySet headSet(Integer toElement, boolean inclusive) {
+        return headSet((int) toElement, inclusive);
+    }
+
+    @Override
+    public IntArraySet tailSet(Integer fromElement, boolean inclusive) {
+        return tailSet((int) fromElement, inclusive);
+    }
+
+    @Override
+    public Comparator<? super Integer> comparator() {
+        return elements.isReversed ? Collections.reverseOrder() : null;
+    }
+
+    @Override
+    public IntArraySet subSet(Integer fromElement, Integer toElement) {
+        if (elements.isReversed ? fromElement < toElement : fromElement > toElement) {
+            throw new IllegalArgumentException("Subset: fromElement > toElement");
+        }
+        return subSet((int) fromElement, true, (int) toElement, false);
+    }
+
+    @Override
+    public IntArraySet headSet(Integer toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public IntArraySet tailSet(Integer fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    public int firstInt() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("No first element, set is empty");
+        }
+        return elements.get(0);
+    }
+
+    public int lastInt() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("No last element, set is empty");
+        }
+        return elements.get(size() - 1);
+    }
+
+    @Override
+    public Integer first() {
+        return firstInt();
+    }
+
+    @Override
+    public Integer last() {
+        return lastInt();
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    public int[] toIntArray() {
+        final int[] array = new int[size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = elements.get(i);
+        }
+        return array;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = elements.from; i < elements.to; i++) {
+            hash += Integer.hashCode(elements.elements[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * Range {@code [from, to)} of a sorted array, read backwards if reversed.
+     * Searches return indices into the whole array in ascending order.
+     */
+    private static class ReversibleIntArray {
+        private final int[] elements;
+        private final int from;
+        private final int to;
+        private final boolean isReversed;
+
+        private ReversibleIntArray(final int[] elements) {
+            this(elements, 0, elements.length, false);
+        }
+
+        private ReversibleIntArray(final int[] elements, final int from, final int to, final boolean isReversed) {
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+            this.isReversed = isReversed;
+        }
+
+        private ReversibleIntArray getDescendingList() {
+            return new ReversibleIntArray(elements, from, to, !isReversed);
+        }
+
+        private ReversibleIntArray subArray(final int from, final int to) {
+            return new ReversibleIntArray(elements, from, to, isReversed);
+        }
+
+        private int get(final int index) {
+            return elements[isReversed ? to - 1 - index : from + index];
+        }
+
+        private int size() {
+            return to - from;
+        }
+
+        private boolean contains(final int index) {
+            return from <= index && index < to;
+        }
+
+        private int search(final int element) {
+            return Arrays.binarySearch(elements, from, to, element);
+        }
+
+        private int lower(final int element) {
+            final int index = search(element);
+            return index >= 0 ? index - 1 : -index - 2;
+        }
+
+        private int floor(final int element) {
+            final int index = search(element);
+            return index >= 0 ? index : -index - 2;
+        }
+
+        private int ceiling(final int element) {
+            final int index = search(element);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        private int higher(final int element) {
+            final int index = search(element);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package ru.ifmo.rain.laptev.arrayset;
+
+import java.util.*;
+
+/**
+ * {@link NavigableSet} of {@code long} values in natural order, backed by a sorted {@code long[]}.
+ * Views share the array the same way {@link ArraySet} views do. Methods with {@code Long} in their names
+ * take and return primitives and never box.
+ *
+ * <p>Kept identical to {@link IntArraySet} up to the element type, change both files together.
+ */
+public class LongArraySet extends AbstractSet<Long> implements NavigableSet<Long> {
+    private final ReversibleLongArray elements;
+
+    public LongArraySet() {
+        this.elements = new ReversibleLongArray(new long[0]);
+    }
+
+    public LongArraySet(final long... elements) {
+        this.elements = new ReversibleLongArray(sortedDistinct(elements.clone()));
+    }
+
+    public LongArraySet(final Collection<Long> elements) {
+        final long[] array = new long[elements.size()];
+        int size = 0;
+        for (Long element : elements) {
+            array[size++] = element;
+        }
+        this.elements = new ReversibleLongArray(sortedDistinct(array));
+    }
+
+    private LongArraySet(final ReversibleLongArray elements) {
+        this.elements = elements;
+    }
+
+    private static long[] sortedDistinct(final long[] array) {
+        Arrays.sort(array);
+        int size = 0;
+        for (int i = 0; i < array.length; i++) {
+            if (i == 0 || array[i] != array[size - 1]) {
+                array[size++] = array[i];
+            }
+        }
+        return size == array.length ? array : Arrays.copyOf(array, size);
+    }
+
+    public boolean containsLong(final long element) {
+        return elements.search(element) >= 0;
+    }
+
+    @Override
+    public boolean contains(final Object element) {
+        return element instanceof Long && containsLong((Long) element);
+    }
+
+    /**
+     * Greatest element strictly less than the given one.
+     *
+     * @throws NoSuchElementException if there is no such element
+     */
+    public long lowerLong(final long element) {
+        return get(lowerIndex(element));
+    }
+
+    /**
+     * Greatest element less than or equal to the given one.
+     *
+     * @throws NoSuchElementException if there is no such element
+     */
+    public long floorLong(final long element) {
+        return get(floorIndex(element));
+    }
+
+    /**
+     * Least element greater than or equal to the given one.
+     *
+     * @throws NoSuchElementException if there is no such element
+     */
+    public long ceilingLong(final long element) {
+        return get(ceilingIndex(element));
+    }
+
+    /**
+     * Least element strictly greater than the given one.
+     *
+     * @throws NoSuchElementException if there is no such element
+     */
+    public long higherLong(final long element) {
+        return get(higherIndex(element));
+    }
+
+    @Override
+    public Long lower(final Long element) {
+        return find(lowerIndex(element));
+    }
+
+    @Override
+    public Long floor(final Long element) {
+        return find(floorIndex(element));
+    }
+
+    @Override
+    public Long ceiling(final Long element) {
+        return find(ceilingIndex(element));
+    }
+
+    @Override
+    public Long higher(final Long element) {
+        return find(higherIndex(element));
+    }
+
+    // Navigation in view order is the opposite navigation in array order for descending views
+    private int lowerIndex(final long element) {
+        return elements.isReversed ? elements.higher(element) : elements.lower(element);
+    }
+
+    private int floorIndex(final long element) {
+        return elements.isReversed ? elements.ceiling(element) : elements.floor(element);
+    }
+
+    private int ceilingIndex(final long element) {
+        return elements.isReversed ? elements.floor(element) : elements.ceiling(element);
+    }
+
+    private int higherIndex(final long element) {
+        return elements.isReversed ? elements.lower(element) : elements.higher(element);
+    }
+
+    private long get(final int index) {
+        if (!elements.contains(index)) {
+            throw new NoSuchElementException("No such element in the set");
+        }
+        return elements.elements[index];
+    }
+
+    private Long find(final int index) {
+        return elements.contains(index) ? elements.elements[index] : null;
+    }
+
+    @Override
+    public Long pollFirst() {
+        throw new UnsupportedOperationException("pollFirst is unsupported");
+    }
+
+    @Override
+    public Long pollLast() {
+        throw new UnsupportedOperationException("pollLast is unsupported");
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return elements.get(index++);
+            }
+        };
+    }
+
+    @Override
+    public LongArraySet descendingSet() {
+        return new LongArraySet(elements.getDescendingList());
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    public LongArraySet subSet(final long fromElement, final boolean fromInclusive,
+                            final long toElement, final boolean toInclusive) {
+        if (elements.isReversed) {
+            return slice(toInclusive ? elements.ceiling(toElement) : elements.higher(toElement),
+                    (fromInclusive ? elements.floor(fromElement) : elements.lower(fromElement)) + 1);
+        }
+        return slice(fromInclusive ? elements.ceiling(fromElement) : elements.higher(fromElement),
+                (toInclusive ? elements.floor(toElement) : elements.lower(toElement)) + 1);
+    }
+
+    public LongArraySet headSet(final long toElement, final boolean inclusive) {
+        if (elements.isReversed) {
+            return slice(inclusive ? elements.ceiling(toElement) : elements.higher(toElement), elements.to);
+        }
+        return slice(elements.from, (inclusive ? elements.floor(toElement) : elements.lower(toElement)) + 1);
+    }
+
+    public LongArraySet tailSet(final long fromElement, final boolean inclusive) {
+        if (elements.isReversed) {
+            return slice(elements.from, (inclusive ? elements.floor(fromElement) : elements.lower(fromElement)) + 1);
+        }
+        return slice(inclusive ? elements.ceiling(fromElement) : elements.higher(fromElement), elements.to);
+    }
+
+    private LongArraySet slice(final int from, final int to) {
+        return new LongArraySet(elements.subArray(from, Math.max(from, to)));
+    }
+
+    @Override
+    public LongArraySet subSet(Long fromElement, boolean fromInclusive, Long toElement, boolean toInclusive) {
+        return subSet((long) fromElement, fromInclusive, (long) toElement, toInclusive);
+    }
+
+    @Override
+    public LongArraySet headSet(Long toElement, boolean inclusive) {
+        return headSet((long) toElement, inclusive);
+    }
+
+    @Override
+    public LongArraySet tailSet(Long fromElement, boolean inclusive) {
+        return tailSet((long) fromElement, inclusive);
+    }
+
+    @Override
+    public Comparator<? super Long> comparator() {
+        return elements.isReversed ? Collections.reverseOrder() : null;
+    }
+
+    @Override
+    public LongArraySet subSet(Long fromElement, Long toElement) {
+        if (elements.isReversed ? fromElement < toElement : fromElement > toElement) {
+            throw new IllegalArgumentException("Subset: fromElement > toElement");
+        }
+        return subSet((long) fromElement, true, (long) toElement, false);
+    }
+
+    @Override
+    public LongArraySet headSet(Long toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public LongArraySet tailSet(Long fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    public long firstLong() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("No first element, set is empty");
+        }
+        return elements.get(0);
+    }
+
+    public long lastLong() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("No last element, set is empty");
+        }
+        return elements.get(size() - 1);
+    }
+
+    @Override
+    public Long first() {
+        return firstLong();
+    }
+
+    @Override
+    public Long last() {
+        return lastLong();
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    public long[] toLongArray() {
+        final long[] array = new long[size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = elements.get(i);
+        }
+        return array;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = elements.from; i < elements.to; i++) {
+            hash += Long.hashCode(elements.elements[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * Range {@code [from, to)} of a sorted array, read backwards if reversed.
+     * Searches return indices into the whole array in ascending order.
+     */
+    private static class ReversibleLongArray {
+        private final long[] elements;
+        private final int from;
+        private final int to;
+        private final boolean isReversed;
+
+        private ReversibleLongArray(final long[] elements) {
+            this(elements, 0, elements.length, false);
+        }
+
+        private ReversibleLongArray(final long[] elements, final int from, final int to, final boolean isReversed) {
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+            this.isReversed = isReversed;
+        }
+
+        private ReversibleLongArray getDescendingList() {
+            return new ReversibleLongArray(elements, from, to, !isReversed);
+        }
+
+        private ReversibleLongArray subArray(final int from, final int to) {
+            return new ReversibleLongArray(elements, from, to, isReversed);
+        }
+
+        private long get(final int index) {
+            return elements[isReversed ? to - 1 - index : from + index];
+        }
+
+        private int size() {
+            return to - from;
+        }
+
+        private boolean contains(final int index) {
+            return from <= index && index < to;
+        }
+
+        private int search(final long element) {
+            return Arrays.binarySearch(elements, from, to, element);
+        }
+
+        private int lower(final long element) {
+            final int index = search(element);
+            return index >= 0 ? index - 1 : -index - 2;
+        }
+
+        private int floor(final long element) {
+            final int index = search(element);
+            return index >= 0 ? index : -index - 2;
+        }
+
+        private int ceiling(final long element) {
+            final int index = search(element);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        private int higher(final long element) {
+            final int index = search(element);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+    }
+}
@@ -0,0 +1,644 @@
+package ru.ifmo.rain.laptev.arrayset;
+
+import java.util.*;
+
+/**
+ * Mutable {@link NavigableSet} backed by a sorted array, like {@link ArraySet}.
+ * Inserts and removals go to small sorted buffers first, queries look at the array and the buffers.
+ * When the buffers grow to about {@code n / log n} elements they are merged into a new array in linear time,
+ * so updates take amortized {@code O(log n)}.
+ *
+ * <p>Views share the array and the buffers with the set they were created from.
+ */
+public class MutableArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+    private static final int MIN_BUFFER_SIZE = 32;
+
+    private final Store<E> store;
+    private final boolean isReversed;
+    private final boolean hasLow;
+    private final E low;
+    private final boolean lowInclusive;
+    private final boolean hasHigh;
+    private final E high;
+    private final boolean highInclusive;
+
+    public MutableArraySet() {
+        this(Collections.emptyList(), null);
+    }
+
+    public MutableArraySet(final Comparator<? super E> comparator) {
+        this(Collections.emptyList(), comparator);
+    }
+
+    public MutableArraySet(final Collection<E> elements) {
+        this(elements, null);
+    }
+
+    public MutableArraySet(final Collection<E> elements, final Comparator<? super E> comparator) {
+        this(new Store<>(comparator), false, false, null, false, false, null, false);
+        final Object[] array = store.sortedDistinct(elements.toArray());
+        store.elements = array;
+        store.size = array.length;
+    }
+
+    private MutableArraySet(final Store<E> store, final boolean isReversed,
+                            final boolean hasLow, final E low, final boolean lowInclusive,
+                            final boolean hasHigh, final E high, final boolean highInclusive) {
+        this.store = store;
+        this.isReversed = isReversed;
+        this.hasLow = hasLow;
+        this.low = low;
+        this.lowInclusive = lowInclusive;
+        this.hasHigh = hasHigh;
+        this.high = high;
+        this.highInclusive = highInclusive;
+    }
+
+    /**
+     * Merges buffered updates into the array.
+     */
+    public void compact() {
+        store.merge();
+    }
+
+    private boolean tooLow(final E element) {
+        if (!hasLow) {
+            return false;
+        }
+        final int compared = store.compare(element, low);
+        return compared < 0 || compared == 0 && !lowInclusive;
+    }
+
+    private boolean tooHigh(final E element) {
+        if (!hasHigh) {
+            return false;
+        }
+        final int compared = store.compare(element, high);
+        return compared > 0 || compared == 0 && !highInclusive;
+    }
+
+    private boolean inRange(final E element) {
+        return !tooLow(element) && !tooHigh(element);
+    }
+
+    private E absLowest() {
+        final E element = hasLow ? store.higher(low, lowInclusive) : store.lowest();
+        return element == null || tooHigh(element) ? null : element;
+    }
+
+    private E absHighest() {
+        final E element = hasHigh ? store.lower(high, highInclusive) : store.highest();
+        return element == null || tooLow(element) ? null : element;
+    }
+
+    private E absLower(final E element, final boolean inclusive) {
+        if (tooHigh(element)) {
+            return absHighest();
+        }
+        final E result = store.lower(element, inclusive);
+        return result == null || tooLow(result) ? null : result;
+    }
+
+    private E absHigher(final E element, final boolean inclusive) {
+        if (tooLow(element)) {
+            return absLowest();
+        }
+        final E result = store.higher(element, inclusive);
+        return result == null || tooHigh(result) ? null : result;
+    }
+
+    @Override
+    public boolean contains(final Object element) {
+        if (element == null) {
+            return false;
+        }
+        try {
+            return inRange((E) element) && store.contains((E) element);
+        } catch (ClassCastException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean add(final E element) {
+        if (!inRange(element)) {
+            throw new IllegalArgumentException("Element is out of the set range");
+        }
+        if (!store.add(element)) {
+            return false;
+        }
+        store.mergeIfFull();
+        return true;
+    }
+
+    @Override
+    public boolean remove(final Object element) {
+        if (!contains(element)) {
+            return false;
+        }
+        store.remove((E) element);
+        store.mergeIfFull();
+        return true;
+    }
+
+    /**
+     * Adds elements of a large collection with one linear merge instead of buffering them one by one.
+     */
+    @Override
+    public boolean addAll(final Collection<? extends E> elements) {
+        if (hasLow || hasHigh || elements.size() <= store.bufferCapacity()) {
+            return super.addAll(elements);
+        }
+        return store.mergeSorted(store.sortedDistinct(elements.toArray()));
+    }
+
+    @Override
+    public E lower(final E e) {
+        return isReversed ? absHigher(e, false) : absLower(e, false);
+    }
+
+    @Override
+    public E floor(final E e) {
+        return isReversed ? absHigher(e, true) : absLower(e, true);
+    }
+
+    @Override
+    public E ceiling(final E e) {
+        return isReversed ? absLower(e, true) : absHigher(e, true);
+    }
+
+    @Override
+    public E higher(final E e) {
+        return isReversed ? absLower(e, false) : absHigher(e, false);
+    }
+
+    @Override
+    public E pollFirst() {
+        final E element = isReversed ? absHighest() : absLowest();
+        if (element != null) {
+            remove(element);
+        }
+        return element;
+    }
+
+    @Override
+    public E pollLast() {
+        final E element = isReversed ? absLowest() : absHighest();
+        if (element != null) {
+            remove(element);
+        }
+        return element;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new MergingIterator();
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new MutableArraySet<>(store, !isReversed, hasLow, low, lowInclusive, hasHigh, high, highInclusive);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (isReversed) {
+            return bounded(true, toElement, toInclusive, true, fromElement, fromInclusive);
+        }
+        return bounded(true, fromElement, fromInclusive, true, toElement, toInclusive);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        if (isReversed) {
+            return bounded(true, toElement, inclusive, false, null, false);
+        }
+        return bounded(false, null, false, true, toElement, inclusive);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        if (isReversed) {
+            return bounded(false, null, false, true, fromElement, inclusive);
+        }
+        return bounded(true, fromElement, inclusive, false, null, false);
+    }
+
+    // Requested bounds are narrowed to the bounds of this view
+    private NavigableSet<E> bounded(boolean newHasLow, E newLow, boolean newLowInclusive,
+                                    boolean newHasHigh, E newHigh, boolean newHighInclusive) {
+        if (hasLow && (!newHasLow || tooLow(newLow))) {
+            newHasLow = true;
+            newLow = low;
+            newLowInclusive = lowInclusive;
+        }
+        if (hasHigh && (!newHasHigh || tooHigh(newHigh))) {
+            newHasHigh = true;
+            newHigh = high;
+            newHighInclusive = highInclusive;
+        }
+        return new MutableArraySet<>(store, isReversed, newHasLow, newLow, newLowInclusive, newHasHigh, newHigh, newHighInclusive);
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return isReversed ? Collections.reverseOrder(store.comparator) : store.comparator;
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        if (store.compare(fromElement, toElement) * (isReversed ? -1 : 1) > 0) {
+            throw new IllegalArgumentException("Subset: fromElement > toElement");
+        }
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public E first() {
+        final E element = isReversed ? absHighest() : absLowest();
+        if (element == null) {
+            throw new NoSuchElementException("No first element, set is empty");
+        }
+        return element;
+    }
+
+    @Override
+    public E last() {
+        final E element = isReversed ? absLowest() : absHighest();
+        if (element == null) {
+            throw new NoSuchElementException("No last element, set is empty");
+        }
+        return element;
+    }
+
+    @Override
+    public int size() {
+        if (!hasLow && !hasHigh) {
+            return store.size - store.removedCount + store.added.size();
+        }
+        final int lowIndex = lowIndex();
+        final int highIndex = highIndex();
+        if (lowIndex >= highIndex) {
+            return inRange(store.added).size();
+        }
+        int removed = 0;
+        for (int i = store.removed.nextSetBit(lowIndex); i >= 0 && i < highIndex; i = store.removed.nextSetBit(i + 1)) {
+            removed++;
+        }
+        return highIndex - lowIndex - removed + inRange(store.added).size();
+    }
+
+    // Array indices of the range are [lowIndex, highIndex)
+    private int lowIndex() {
+        if (!hasLow) {
+            return 0;
+        }
+        final int index = store.search(low);
+        return index >= 0 ? (lowInclusive ? index : index + 1) : -index - 1;
+    }
+
+    private int highIndex() {
+        if (!hasHigh) {
+            return store.size;
+        }
+        final int index = store.search(high);
+        return index >= 0 ? (highInclusive ? index + 1 : index) : -index - 1;
+    }
+
+    private NavigableSet<E> inRange(final NavigableSet<E> buffer) {
+        if (hasLow && hasHigh) {
+            final int compared = store.compare(low, high);
+            if (compared > 0 || compared == 0 && !(lowInclusive && highInclusive)) {
+                return Collections.emptyNavigableSet();
+            }
+        }
+        NavigableSet<E> range = buffer;
+        if (hasLow) {
+            range = range.tailSet(low, lowInclusive);
+        }
+        if (hasHigh) {
+            range = range.headSet(high, highInclusive);
+        }
+        return range;
+    }
+
+    /**
+     * Sorted array with buffered updates, shared by a set and its views.
+     * {@code added} holds elements absent from the array, {@code removed} marks indices of removed elements of the array.
+     */
+    private static class Store<E> {
+        private final Comparator<? super E> comparator;
+        private final TreeSet<E> added;
+        private final BitSet removed = new BitSet();
+        private Object[] elements = new Object[0];
+        private int size;
+        private int removedCount;
+        private int modCount;
+
+        private Store(final Comparator<? super E> comparator) {
+            this.comparator = comparator;
+            this.added = new TreeSet<>(comparator);
+        }
+
+        private int compare(final E first, final E second) {
+            return comparator == null ? ((Comparable) first).compareTo(second) : comparator.compare(first, second);
+        }
+
+        private E get(final int index) {
+            return (E) elements[index];
+        }
+
+        private int search(final E element) {
+            return Arrays.binarySearch((E[]) elements, 0, size, element, comparator);
+        }
+
+        private Object[] sortedDistinct(final Object[] array) {
+            Arrays.sort((E[]) array, comparator);
+            int distinct = 0;
+            for (int i = 0; i < array.length; i++) {
+                if (distinct == 0 || compare((E) array[distinct - 1], (E) array[i]) != 0) {
+                    array[distinct++] = array[i];
+                }
+            }
+            return distinct == array.length ? array : Arrays.copyOf(array, distinct);
+        }
+
+        private boolean contains(final E element) {
+            if (added.contains(element)) {
+                return true;
+            }
+            final int index = search(element);
+            return index >= 0 && !removed.get(index);
+        }
+
+        private boolean add(final E element) {
+            final int index = search(element);
+            if (index >= 0) {
+                if (!removed.get(index)) {
+                    return false;
+                }
+                // Equal by comparator is not necessarily the same instance, the set holds the added one
+                elements[index] = element;
+                removed.clear(index);
+                removedCount--;
+            } else if (!added.add(element)) {
+                return false;
+            }
+            modCount++;
+            return true;
+        }
+
+        // The element must be present
+        private void remove(final E element) {
+            if (added.remove(element)) {
+                modCount++;
+            } else {
+                removeAt(search(element));
+            }
+        }
+
+        private void removeAt(final int index) {
+            removed.set(index);
+            removedCount++;
+            modCount++;
+        }
+
+        private E lowest() {
+            return higher(null, true);
+        }
+
+        private E highest() {
+            return lower(null, true);
+        }
+
+        /**
+         * Greatest element less than the given one, or equal to it if inclusive. {@code null} stands for infinity.
+         */
+        private E lower(final E element, final boolean inclusive) {
+            int index = size - 1;
+            E buffered = added.isEmpty() ? null : added.last();
+            if (element != null) {
+                final int found = search(element);
+                index = found >= 0 ? (inclusive ? found : found - 1) : -found - 2;
+                buffered = inclusive ? added.floor(element) : added.lower(element);
+            }
+            index = index < 0 ? -1 : removed.previousClearBit(index);
+            if (index < 0) {
+                return buffered;
+            }
+            return buffered == null || compare(get(index), buffered) > 0 ? get(index) : buffered;
+        }
+
+        /**
+         * Least element greater than the given one, or equal to it if inclusive. {@code null} stands for minus infinity.
+         */
+        private E higher(final E element, final boolean inclusive) {
+            int index = 0;
+            E buffered = added.isEmpty() ? null : added.first();
+            if (element != null) {
+                final int found = search(element);
+                index = found >= 0 ? (inclusive ? found : found + 1) : -found - 1;
+                buffered = inclusive ? added.ceiling(element) : added.higher(element);
+            }
+            index = removed.nextClearBit(index);
+            if (index >= size) {
+                return buffered;
+            }
+            return buffered == null || compare(get(index), buffered) < 0 ? get(index) : buffered;
+        }
+
+        private int bufferCapacity() {
+            final int log = 32 - Integer.numberOfLeadingZeros(Math.max(1, size));
+            return Math.max(MIN_BUFFER_SIZE, size / log);
+        }
+
+        private void mergeIfFull() {
+            if (added.size() + removedCount > bufferCapacity()) {
+                merge();
+            }
+        }
+
+        private void merge() {
+            if (added.isEmpty() && removedCount == 0) {
+                return;
+            }
+            final Object[] merged = new Object[size - removedCount + added.size()];
+            final Iterator<E> addedIterator = added.iterator();
+            E nextAdded = addedIterator.hasNext() ? addedIterator.next() : null;
+            int length = 0;
+            for (int i = 0; i < size; i++) {
+                if (removed.get(i)) {
+                    continue;
+                }
+                final E element = get(i);
+                while (nextAdded != null && compare(nextAdded, element) < 0) {
+                    merged[length++] = nextAdded;
+                    nextAdded = addedIterator.hasNext() ? addedIterator.next() : null;
+                }
+                merged[length++] = element;
+            }
+            while (nextAdded != null) {
+                merged[length++] = nextAdded;
+                nextAdded = addedIterator.hasNext() ? addedIterator.next() : null;
+            }
+            elements = merged;
+            size = length;
+            added.clear();
+            removed.clear();
+            removedCount = 0;
+            modCount++;
+        }
+
+        /**
+         * Merges sorted distinct elements into the array.
+         */
+        private boolean mergeSorted(final Object[] sorted) {
+            merge();
+            final Object[] merged = new Object[size + sorted.length];
+            int i = 0;
+            int j = 0;
+            int length = 0;
+            while (i < size || j < sorted.length) {
+                final int compared = i == size ? 1 : j == sorted.length ? -1 : compare(get(i), (E) sorted[j]);
+                if (compared <= 0) {
+                    merged[length++] = elements[i++];
+                    if (compared == 0) {
+                        j++;
+                    }
+                } else {
+                    merged[length++] = sorted[j++];
+                }
+            }
+            if (length == size) {
+                return false;
+            }
+            elements = merged;
+            size = length;
+            modCount++;
+            return true;
+        }
+    }
+
+    /**
+     * Iterates the array range and the buffered elements of the range together in view order.
+     */
+    private class MergingIterator implements Iterator<E> {
+        private final NavigableSet<E> buffered;
+        private final int end;
+        private int index;
+        private E nextBuffered;
+        private boolean nextFromBuffer;
+        private int nextIndex;
+        private E next;
+        private boolean lastFromBuffer;
+        private int lastIndex;
+        private E last;
+        private boolean merged;
+        private int expectedModCount = store.modCount;
+
+        private MergingIterator() {
+            buffered = inRange(store.added);
+            nextBuffered = buffered.isEmpty() ? null : isReversed ? buffered.last() : buffered.first();
+            final int lowIndex = lowIndex();
+            final int highIndex = Math.max(lowIndex, highIndex());
+            index = isReversed ? highIndex - 1 : lowIndex;
+            end = isReversed ? lowIndex - 1 : highIndex;
+            next = advance();
+        }
+
+        // Buffered elements are found by value, so removing them while iterating is safe
+        private E advance() {
+            final int step = isReversed ? -1 : 1;
+            if (isReversed) {
+                index = Math.max(end, store.removed.previousClearBit(index));
+            } else {
+                index = Math.min(end, store.removed.nextClearBit(index));
+            }
+            final E fromArray = index == end ? null : store.get(index);
+            if (nextBuffered != null && (fromArray == null || precedes(nextBuffered, fromArray))) {
+                final E result = nextBuffered;
+                nextBuffered = isReversed ? buffered.lower(result) : buffered.higher(result);
+                nextFromBuffer = true;
+                return result;
+            }
+            nextIndex = index;
+            if (fromArray != null) {
+                index += step;
+            }
+            nextFromBuffer = false;
+            return fromArray;
+        }
+
+        private boolean precedes(final E first, final E second) {
+            final int compared = store.compare(first, second);
+            return isReversed ? compared > 0 : compared < 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                mergeAtEnd();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public E next() {
+            if (store.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            lastFromBuffer = nextFromBuffer;
+            lastIndex = nextIndex;
+            next = advance();
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            if (store.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            // Buffers are not merged before the iteration ends, so array indices stay valid until then
+            if (lastFromBuffer || merged) {
+                store.remove(last);
+            } else {
+                store.removeAt(lastIndex);
+            }
+            expectedModCount = store.modCount;
+            last = null;
+            mergeAtEnd();
+        }
+
+        // Removals through the iterator are merged at once when the iteration ends
+        private void mergeAtEnd() {
+            if (next == null && store.modCount == expectedModCount) {
+                store.mergeIfFull();
+                merged |= store.modCount != expectedModCount;
+                expectedModCount = store.modCount;
+            }
+        }
+    }
+}
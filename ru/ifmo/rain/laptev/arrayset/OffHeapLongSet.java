@@ -0,0 +1,417 @@
+package ru.ifmo.rain.laptev.arrayset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * {@link NavigableSet} of {@code long} values in natural order, stored outside the heap in direct buffers
+ * or in a memory-mapped file, so even billions of elements add nothing to garbage collection.
+ * Views share the storage the same way {@link LongArraySet} views do. Methods with {@code Long} in their names
+ * take and return primitives and never box. {@link #size()} is capped at {@link Integer#MAX_VALUE},
+ * {@link #sizeLong()} is exact.
+ */
+public class OffHeapLongSet extends AbstractSet<Long> implements NavigableSet<Long> {
+    private static final int WINDOW_SHIFT = 27;
+    private static final long WINDOW_MASK = (1L << WINDOW_SHIFT) - 1;
+
+    private final ReversibleLongBuffer elements;
+
+    public OffHeapLongSet(final long... elements) {
+        final long[] array = elements.clone();
+        Arrays.sort(array);
+        int size = 0;
+        for (int i = 0; i < array.length; i++) {
+            if (i == 0 || array[i] != array[size - 1]) {
+                array[size++] = array[i];
+            }
+        }
+        final LongBuffer[] windows = new LongBuffer[(int) ((size + WINDOW_MASK) >>> WINDOW_SHIFT)];
+        for (int i = 0; i < windows.length; i++) {
+            final int from = i << WINDOW_SHIFT;
+            final int length = Math.min(size - from, 1 << WINDOW_SHIFT);
+            windows[i] = ByteBuffer.allocateDirect(length * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+            windows[i].put(array, from, length);
+        }
+        this.elements = new ReversibleLongBuffer(windows, 0, size, false);
+    }
+
+    public OffHeapLongSet(final Collection<Long> elements) {
+        this(toArray(elements));
+    }
+
+    private OffHeapLongSet(final ReversibleLongBuffer elements) {
+        this.elements = elements;
+    }
+
+    private static long[] toArray(final Collection<Long> elements) {
+        final long[] array = new long[elements.size()];
+        int size = 0;
+        for (Long element : elements) {
+            array[size++] = element;
+        }
+        return array;
+    }
+
+    /**
+     * Maps a file of strictly ascending big-endian {@code long} values, as written by {@link #write}.
+     * The file is not read or checked, so loading takes constant time; lookups in an unsorted file give arbitrary results.
+     */
+    public static OffHeapLongSet load(final Path file) throws IOException {
+        return load(file, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Maps a file of strictly ascending {@code long} values in the given byte order.
+     */
+    public static OffHeapLongSet load(final Path file, final ByteOrder order) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size % Long.BYTES != 0) {
+                throw new IOException("File size is not a multiple of " + Long.BYTES + ": " + file);
+            }
+            final long count = size / Long.BYTES;
+            final LongBuffer[] windows = new LongBuffer[(int) ((count + WINDOW_MASK) >>> WINDOW_SHIFT)];
+            for (int i = 0; i < windows.length; i++) {
+                final long from = (long) i << WINDOW_SHIFT;
+                final long length = Math.min(count - from, 1L << WINDOW_SHIFT);
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, from * Long.BYTES, length * Long.BYTES)
+                        .order(order).asLongBuffer();
+            }
+            return new OffHeapLongSet(new ReversibleLongBuffer(windows, 0, count, false));
+        }
+    }
+
+    /**
+     * Writes elements in ascending order as big-endian {@code long} values, the format read by {@link #load(Path)}.
+     * The file must not be mapped by a loaded set: truncating it crashes reads of that set.
+     */
+    public void write(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+            final LongBuffer longs = buffer.asLongBuffer();
+            for (long i = elements.from; i < elements.to; ) {
+                longs.clear();
+                while (longs.hasRemaining() && i < elements.to) {
+                    longs.put(elements.getAbsolute(i++));
+                }
+                buffer.clear().limit(longs.position() * Long.BYTES);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    public boolean containsLong(final long element) {
+        return elements.search(element) >= 0;
+    }
+
+    @Override
+    public boolean contains(final Object element) {
+        return element instanceof Long && containsLong((Long) element);
+    }
+
+    public long lowerLong(final long element) {
+        return get(lowerIndex(element));
+    }
+
+    public long floorLong(final long element) {
+        return get(floorIndex(element));
+    }
+
+    public long ceilingLong(final long element) {
+        return get(ceilingIndex(element));
+    }
+
+    public long higherLong(final long element) {
+        return get(higherIndex(element));
+    }
+
+    @Override
+    public Long lower(final Long element) {
+        return find(lowerIndex(element));
+    }
+
+    @Override
+    public Long floor(final Long element) {
+        return find(floorIndex(element));
+    }
+
+    @Override
+    public Long ceiling(final Long element) {
+        return find(ceilingIndex(element));
+    }
+
+    @Override
+    public Long higher(final Long element) {
+        return find(higherIndex(element));
+    }
+
+    // Navigation in view order is the opposite navigation in storage order for descending views
+    private long lowerIndex(final long element) {
+        return elements.isReversed ? elements.higher(element) : elements.lower(element);
+    }
+
+    private long floorIndex(final long element) {
+        return elements.isReversed ? elements.ceiling(element) : elements.floor(element);
+    }
+
+    private long ceilingIndex(final long element) {
+        return elements.isReversed ? elements.floor(element) : elements.ceiling(element);
+    }
+
+    private long higherIndex(final long element) {
+        return elements.isReversed ? elements.lower(element) : elements.higher(element);
+    }
+
+    private long get(final long index) {
+        if (!elements.contains(index)) {
+            throw new NoSuchElementException("No such element in the set");
+        }
+        return elements.getAbsolute(index);
+    }
+
+    private Long find(final long index) {
+        return elements.contains(index) ? elements.getAbsolute(index) : null;
+    }
+
+    @Override
+    public Long pollFirst() {
+        throw new UnsupportedOperationException("pollFirst is unsupported");
+    }
+
+    @Override
+    public Long pollLast() {
+        throw new UnsupportedOperationException("pollLast is unsupported");
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private long index;
+
+            @Override
+            public boolean hasNext() {
+                return index < sizeLong();
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return elements.get(index++);
+            }
+        };
+    }
+
+    @Override
+    public OffHeapLongSet descendingSet() {
+        return new OffHeapLongSet(elements.getDescendingList());
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    public OffHeapLongSet subSet(final long fromElement, final boolean fromInclusive,
+                                 final long toElement, final boolean toInclusive) {
+        if (elements.isReversed) {
+            return slice(toInclusive ? elements.ceiling(toElement) : elements.higher(toElement),
+                    (fromInclusive ? elements.floor(fromElement) : elements.lower(fromElement)) + 1);
+        }
+        return slice(fromInclusive ? elements.ceiling(fromElement) : elements.higher(fromElement),
+                (toInclusive ? elements.floor(toElement) : elements.lower(toElement)) + 1);
+    }
+
+    public OffHeapLongSet headSet(final long toElement, final boolean inclusive) {
+        if (elements.isReversed) {
+            return slice(inclusive ? elements.ceiling(toElement) : elements.higher(toElement), elements.to);
+        }
+        return slice(elements.from, (inclusive ? elements.floor(toElement) : elements.lower(toElement)) + 1);
+    }
+
+    public OffHeapLongSet tailSet(final long fromElement, final boolean inclusive) {
+        if (elements.isReversed) {
+            return slice(elements.from, (inclusive ? elements.floor(fromElement) : elements.lower(fromElement)) + 1);
+        }
+        return slice(inclusive ? elements.ceiling(fromElement) : elements.higher(fromElement), elements.to);
+    }
+
+    private OffHeapLongSet slice(final long from, final long to) {
+        return new OffHeapLongSet(elements.subBuffer(from, Math.max(from, to)));
+    }
+
+    @Override
+    public OffHeapLongSet subSet(Long fromElement, boolean fromInclusive, Long toElement, boolean toInclusive) {
+        return subSet((long) fromElement, fromInclusive, (long) toElement, toInclusive);
+    }
+
+    @Override
+    public OffHeapLongSet headSet(Long toElement, boolean inclusive) {
+        return headSet((long) toElement, inclusive);
+    }
+
+    @Override
+    public OffHeapLongSet tailSet(Long fromElement, boolean inclusive) {
+        return tailSet((long) fromElement, inclusive);
+    }
+
+    @Override
+    public Comparator<? super Long> comparator() {
+        return elements.isReversed ? Collections.reverseOrder() : null;
+    }
+
+    @Override
+    public OffHeapLongSet subSet(Long fromElement, Long toElement) {
+        if (elements.isReversed ? fromElement < toElement : fromElement > toElement) {
+            throw new IllegalArgumentException("Subset: fromElement > toElement");
+        }
+        return subSet((long) fromElement, true, (long) toElement, false);
+    }
+
+    @Override
+    public OffHeapLongSet headSet(Long toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public OffHeapLongSet tailSet(Long fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    public long firstLong() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("No first element, set is empty");
+        }
+        return elements.get(0);
+    }
+
+    public long lastLong() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("No last element, set is empty");
+        }
+        return elements.get(sizeLong() - 1);
+    }
+
+    @Override
+    public Long first() {
+        return firstLong();
+    }
+
+    @Override
+    public Long last() {
+        return lastLong();
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, sizeLong());
+    }
+
+    public long sizeLong() {
+        return elements.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return sizeLong() == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (long i = elements.from; i < elements.to; i++) {
+            hash += Long.hashCode(elements.getAbsolute(i));
+        }
+        return hash;
+    }
+
+    /**
+     * Range {@code [from, to)} of sorted values split into windows of {@code 2^27} values, read backwards if reversed.
+     * Searches return indices into the whole storage in ascending order.
+     */
+    private static class ReversibleLongBuffer {
+        private final LongBuffer[] windows;
+        private final long from;
+        private final long to;
+        private final boolean isReversed;
+
+        private ReversibleLongBuffer(final LongBuffer[] windows, final long from, final long to, final boolean isReversed) {
+            this.windows = windows;
+            this.from = from;
+            this.to = to;
+            this.isReversed = isReversed;
+        }
+
+        private ReversibleLongBuffer getDescendingList() {
+            return new ReversibleLongBuffer(windows, from, to, !isReversed);
+        }
+
+        private ReversibleLongBuffer subBuffer(final long from, final long to) {
+            return new ReversibleLongBuffer(windows, from, to, isReversed);
+        }
+
+        private long getAbsolute(final long index) {
+            return windows[(int) (index >>> WINDOW_SHIFT)].get((int) (index & WINDOW_MASK));
+        }
+
+        private long get(final long index) {
+            return getAbsolute(isReversed ? to - 1 - index : from + index);
+        }
+
+        private long size() {
+            return to - from;
+        }
+
+        private boolean contains(final long index) {
+            return from <= index && index < to;
+        }
+
+        // Same result as Arrays.binarySearch over the range
+        private long search(final long element) {
+            long left = from;
+            long right = to - 1;
+            while (left <= right) {
+                final long middle = (left + right) >>> 1;
+                final long value = getAbsolute(middle);
+                if (value < element) {
+                    left = middle + 1;
+                } else if (value > element) {
+                    right = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -left - 1;
+        }
+
+        private long lower(final long element) {
+            final long index = search(element);
+            return index >= 0 ? index - 1 : -index - 2;
+        }
+
+        private long floor(final long element) {
+            final long index = search(element);
+            return index >= 0 ? index : -index - 2;
+        }
+
+        private long ceiling(final long element) {
+            final long index = search(element);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        private long higher(final long element) {
+            final long index = search(element);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+#!/bin/sh
+# Compiles the arrayset package and runs ArraySetBenchmark, arguments are passed to the benchmark.
+# Usage: ./benchmark.sh [--warmup count] [--iterations count] [--max-size elements]
+set -e
+root=$(cd "$(dirname "$0")/../../../../.." && pwd)
+out=$(mktemp -d)
+trap 'rm -rf "$out"' EXIT
+javac -d "$out" "$root"/ru/ifmo/rain/laptev/arrayset/*.java
+java -Xms4g -Xmx4g -XX:+UseParallelGC -cp "$out" ru.ifmo.rain.laptev.arrayset.ArraySetBenchmark "$@"
@@ -0,0 +1,124 @@
+package ru.ifmo.rain.laptev.arrayset.test;
+
+import org.junit.jupiter.api.Test;
+import ru.ifmo.rain.laptev.arrayset.ArrayMap;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.arrayset.test.ArraySetTestUtils.*;
+
+class ArrayMapTest {
+    private final Random random = new Random(1306);
+
+    @Test
+    void test1_matchesTreeMap() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final int range = 1 + random.nextInt(1000);
+            final Comparator<Integer> comparator = randomComparator(random);
+            final Map<Integer, String> map = new LinkedHashMap<>();
+            for (int key : randomList(random, random.nextInt(300), range)) {
+                map.put(key, Integer.toString(random.nextInt()));
+            }
+            final NavigableMap<Integer, String> expected = new TreeMap<>(comparator);
+            expected.putAll(map);
+            assertSameViews(expected, new ArrayMap<>(map, comparator), range);
+        }
+    }
+
+    @Test
+    void test2_equalKeysByComparator() {
+        final Map<String, Integer> map = new LinkedHashMap<>();
+        map.put("b", 1);
+        map.put("A", 2);
+        map.put("B", 3);
+        map.put("a", 4);
+        final NavigableMap<String, Integer> expected = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        expected.putAll(map);
+        final ArrayMap<String, Integer> actual = new ArrayMap<>(map, String.CASE_INSENSITIVE_ORDER);
+        assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(actual.entrySet()));
+        assertEquals(4, actual.get("A"));
+        assertEquals(3, actual.get("b"));
+    }
+
+    @Test
+    void test3_unsupported() {
+        final ArrayMap<Integer, Integer> map = new ArrayMap<>(Map.of(1, 1));
+        assertThrows(UnsupportedOperationException.class, map::pollFirstEntry);
+        assertThrows(UnsupportedOperationException.class, () -> map.put(2, 2));
+        assertThrows(IllegalArgumentException.class, () -> map.subMap(2, 1));
+        assertNull(new ArrayMap<Integer, Integer>().firstEntry());
+        assertThrows(NoSuchElementException.class, () -> new ArrayMap<Integer, Integer>().firstKey());
+    }
+
+    private void assertSameViews(NavigableMap<Integer, String> expected, NavigableMap<Integer, String> actual,
+                                 final int range) {
+        for (int depth = 0; depth < VIEW_DEPTH; depth++) {
+            assertSameMap(expected, actual, range);
+            if (expected.isEmpty()) {
+                return;
+            }
+            int from = clamp(expected, random.nextInt(range + 2) - 1);
+            int to = clamp(expected, random.nextInt(range + 2) - 1);
+            if (compare(expected.navigableKeySet(), from, to) > 0) {
+                final int swap = from;
+                from = to;
+                to = swap;
+            }
+            final boolean fromInclusive = random.nextBoolean();
+            final boolean toInclusive = random.nextBoolean();
+            switch (random.nextInt(5)) {
+                case 0:
+                    expected = expected.subMap(from, fromInclusive, to, toInclusive);
+                    actual = actual.subMap(from, fromInclusive, to, toInclusive);
+                    break;
+                case 1:
+                    expected = (NavigableMap<Integer, String>) expected.subMap(from, to);
+                    actual = (NavigableMap<Integer, String>) actual.subMap(from, to);
+                    break;
+                case 2:
+                    expected = expected.headMap(to, toInclusive);
+                    actual = actual.headMap(to, toInclusive);
+                    break;
+                case 3:
+                    expected = expected.tailMap(from, fromInclusive);
+                    actual = actual.tailMap(from, fromInclusive);
+                    break;
+                default:
+                    expected = expected.descendingMap();
+                    actual = actual.descendingMap();
+            }
+        }
+    }
+
+    private void assertSameMap(final NavigableMap<Integer, String> expected, final NavigableMap<Integer, String> actual,
+                               final int range) {
+        assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(actual.entrySet()));
+        assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(actual.values()));
+        assertEquals(expected, actual);
+        assertEquals(expected.hashCode(), actual.hashCode());
+        assertEquals(expected.firstEntry(), actual.firstEntry());
+        assertEquals(expected.lastEntry(), actual.lastEntry());
+        assertSameSet(expected.navigableKeySet(), actual.navigableKeySet(),
+                () -> random.nextInt(range + 2) - 1);
+        assertEquals(new ArrayList<>(expected.descendingKeySet()), new ArrayList<>(actual.descendingKeySet()));
+        for (int i = 0; i < PROBES; i++) {
+            final int key = random.nextInt(range + 2) - 1;
+            assertEquals(expected.get(key), actual.get(key), "get " + key);
+            assertEquals(expected.containsKey(key), actual.containsKey(key), "containsKey " + key);
+            assertEquals(expected.lowerEntry(key), actual.lowerEntry(key), "lowerEntry " + key);
+            assertEquals(expected.floorEntry(key), actual.floorEntry(key), "floorEntry " + key);
+            assertEquals(expected.ceilingEntry(key), actual.ceilingEntry(key), "ceilingEntry " + key);
+            assertEquals(expected.higherEntry(key), actual.higherEntry(key), "higherEntry " + key);
+            assertEquals(expected.floorKey(key), actual.floorKey(key), "floorKey " + key);
+            assertEquals(expected.higherKey(key), actual.higherKey(key), "higherKey " + key);
+        }
+    }
+
+    private static int clamp(final NavigableMap<Integer, String> map, final int key) {
+        if (compare(map.navigableKeySet(), key, map.firstKey()) < 0) {
+            return map.firstKey();
+        }
+        return compare(map.navigableKeySet(), key, map.lastKey()) > 0 ? map.lastKey() : key;
+    }
+}
@@ -0,0 +1,79 @@
+package ru.ifmo.rain.laptev.arrayset.test;
+
+import org.junit.jupiter.api.Test;
+import ru.ifmo.rain.laptev.arrayset.ArraySet;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.arrayset.test.ArraySetTestUtils.*;
+
+class ArraySetBatchTest {
+    private final Random random = new Random(5544);
+
+    @Test
+    void test1_batchLookups() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final int range = 1 + random.nextInt(1000);
+            final Comparator<Integer> comparator = randomComparator(random);
+            final List<Integer> list = randomList(random, random.nextInt(300), range);
+            NavigableSet<Integer> expected = new TreeSet<>(comparator);
+            expected.addAll(list);
+            ArraySet<Integer> set = new ArraySet<>(list, comparator);
+            if (random.nextBoolean()) {
+                expected = expected.descendingSet();
+                set = set.descendingSet();
+            }
+            // Probes in the order of the set, in the opposite order or shuffled
+            final Integer[] probes = randomList(random, random.nextInt(100), range + 2).stream()
+                    .map(probe -> probe - 1).toArray(Integer[]::new);
+            switch (random.nextInt(3)) {
+                case 0:
+                    Arrays.sort(probes, expected.comparator());
+                    break;
+                case 1:
+                    Arrays.sort(probes, expected.descendingSet().comparator());
+                    break;
+                default:
+            }
+            assertBatches(expected, set, probes);
+        }
+    }
+
+    @Test
+    void test2_containsAllCollection() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final int range = 1 + random.nextInt(100);
+            final Comparator<Integer> comparator = randomComparator(random);
+            final ArraySet<Integer> set = new ArraySet<>(randomList(random, random.nextInt(100), range), comparator);
+            final List<Integer> probes = randomList(random, random.nextInt(10), range);
+            final NavigableSet<Integer> sorted = new TreeSet<>(comparator);
+            sorted.addAll(probes);
+            final boolean expected = new TreeSet<>(set).containsAll(probes);
+            assertEquals(expected, set.containsAll(probes));
+            assertEquals(expected, set.containsAll(sorted));
+            assertEquals(expected, set.containsAll(new ArraySet<>(probes, comparator)));
+            assertEquals(expected, set.containsAll(sorted.descendingSet()));
+        }
+        final ArraySet<Integer> set = new ArraySet<>(List.of(1, 2, 3));
+        assertFalse(set.containsAll(new TreeSet<>(List.of("1"))));
+        assertFalse(set.containsAll(new Integer[]{1, null}));
+        assertTrue(set.containsAll(new Integer[0]));
+        assertThrows(IllegalArgumentException.class, () -> set.ceilingAll(new Integer[2], new Integer[1]));
+    }
+
+    private static void assertBatches(final NavigableSet<Integer> expected, final ArraySet<Integer> set,
+                                      final Integer[] probes) {
+        final Integer[] ceilings = new Integer[probes.length];
+        final Integer[] floors = new Integer[probes.length + 1];
+        set.ceilingAll(probes, ceilings);
+        set.floorAll(probes, floors);
+        for (int i = 0; i < probes.length; i++) {
+            assertEquals(expected.ceiling(probes[i]), ceilings[i], "ceiling " + probes[i]);
+            assertEquals(expected.floor(probes[i]), floors[i], "floor " + probes[i]);
+        }
+        assertEquals(expected.containsAll(Arrays.asList(probes)), set.containsAll(probes));
+        final Integer[] present = Arrays.stream(probes).filter(expected::contains).toArray(Integer[]::new);
+        assertTrue(set.containsAll(present));
+    }
+}
@@ -0,0 +1,62 @@
+package ru.ifmo.rain.laptev.arrayset.test;
+
+import org.junit.jupiter.api.Test;
+import ru.ifmo.rain.laptev.arrayset.ArraySet;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.arrayset.test.ArraySetTestUtils.*;
+
+class ArraySetConstructionTest {
+    private final Random random = new Random(2291);
+
+    @Test
+    void test1_unsortedWithDuplicates() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final int range = 1 + random.nextInt(1000);
+            final Comparator<Integer> comparator = randomComparator(random);
+            final List<Integer> list = randomList(random, random.nextInt(500), range);
+            final List<Integer> copy = new ArrayList<>(list);
+            final NavigableSet<Integer> expected = new TreeSet<>(comparator);
+            expected.addAll(list);
+            assertSameViews(expected, new ArraySet<>(list, comparator), () -> random.nextInt(range + 2) - 1, random);
+            assertEquals(copy, list);
+        }
+    }
+
+    @Test
+    void test2_sortedInput() {
+        final List<Integer> ascending = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ascending.add(3 * i);
+        }
+        final List<Integer> descending = new ArrayList<>(ascending);
+        Collections.reverse(descending);
+        assertSameViews(new TreeSet<>(ascending), new ArraySet<>(ascending), () -> random.nextInt(3002) - 1, random);
+        assertSameViews(new TreeSet<>(ascending), new ArraySet<>(descending), () -> random.nextInt(3002) - 1, random);
+        final NavigableSet<Integer> reversed = new TreeSet<>(Comparator.reverseOrder());
+        reversed.addAll(ascending);
+        assertSameViews(reversed, new ArraySet<>(descending, Comparator.reverseOrder()), () -> random.nextInt(3002) - 1, random);
+        assertSameViews(reversed, new ArraySet<>(ascending, Comparator.reverseOrder()), () -> random.nextInt(3002) - 1, random);
+    }
+
+    @Test
+    void test3_largeInput() {
+        // Large enough for the parallel sort to split the array
+        final List<Integer> list = randomList(random, 200_000, 100_000);
+        assertSameViews(new TreeSet<>(list), new ArraySet<>(list), () -> random.nextInt(100_002) - 1, random);
+    }
+
+    @Test
+    void test4_firstOfEqualElementsKept() {
+        final List<String> list = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            final String string = Integer.toString(random.nextInt(1000), 36) + "x";
+            list.add(random.nextBoolean() ? string.toUpperCase() : string);
+        }
+        final NavigableSet<String> expected = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        expected.addAll(list);
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(new ArraySet<>(list, String.CASE_INSENSITIVE_ORDER)));
+    }
+}
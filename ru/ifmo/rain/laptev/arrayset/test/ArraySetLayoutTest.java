@@ -0,0 +1,56 @@
+package ru.ifmo.rain.laptev.arrayset.test;
+
+import org.junit.jupiter.api.Test;
+import ru.ifmo.rain.laptev.arrayset.ArraySet;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.arrayset.test.ArraySetTestUtils.*;
+
+class ArraySetLayoutTest {
+    private final Random random = new Random(7451);
+
+    @Test
+    void test1_layoutsMatchTreeSet() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final int range = 1 + random.nextInt(1000);
+            final Comparator<Integer> comparator = randomComparator(random);
+            final List<Integer> list = randomList(random, random.nextInt(300), range);
+            final NavigableSet<Integer> expected = new TreeSet<>(comparator);
+            expected.addAll(list);
+            for (ArraySet.SearchLayout layout : ArraySet.SearchLayout.values()) {
+                assertSameViews(expected, new ArraySet<>(list, comparator, layout), () -> random.nextInt(range + 2) - 1, random);
+            }
+        }
+    }
+
+    @Test
+    void test2_eytzingerSizes() {
+        // Complete and incomplete last levels of the implicit tree
+        for (int size = 0; size <= 70; size++) {
+            final List<Integer> list = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                list.add(2 * i);
+            }
+            final ArraySet<Integer> set = new ArraySet<>(list, null, ArraySet.SearchLayout.EYTZINGER);
+            assertSameSet(new TreeSet<>(list), set, () -> random.nextInt(2 * list.size() + 3) - 1);
+            for (int i = -1; i <= 2 * size; i++) {
+                assertEquals(i >= 0 && i % 2 == 0 && i < 2 * size, set.contains(i), "contains " + i);
+            }
+        }
+    }
+
+    @Test
+    void test3_equalElementsByComparator() {
+        final List<String> list = List.of("b", "A", "a", "B", "c");
+        final NavigableSet<String> expected = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        expected.addAll(list);
+        for (ArraySet.SearchLayout layout : ArraySet.SearchLayout.values()) {
+            final ArraySet<String> set = new ArraySet<>(list, String.CASE_INSENSITIVE_ORDER, layout);
+            assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+            assertEquals("b", set.ceiling("B"));
+            assertTrue(set.contains("C"));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ru.ifmo.rain.laptev.arrayset.test;
+
+import org.junit.jupiter.api.Test;
+import ru.ifmo.rain.laptev.arrayset.ArraySet;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.arrayset.test.ArraySetTestUtils.*;
+
+class ArraySetOperationsTest {
+    private final Random random = new Random(9103);
+
+    @Test
+    void test1_integerOperations() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final int range = 1 + random.nextInt(1000);
+            final Comparator<Integer> comparator = randomComparator(random);
+            final ArraySet<Integer> first = new ArraySet<>(randomList(random, randomSize(), range), comparator);
+            final ArraySet<Integer> second = new ArraySet<>(randomList(random, randomSize(), range), comparator);
+            assertOperations(first, second, () -> random.nextInt(range + 2) - 1);
+            assertOperations(first, new TreeSet<>(second), () -> random.nextInt(range + 2) - 1);
+            assertOperations(first, new ArrayList<>(second), () -> random.nextInt(range + 2) - 1);
+        }
+    }
+
+    @Test
+    void test2_equalElementsKeepThisSet() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final ArraySet<String> first = new ArraySet<>(randomStrings(randomSize()), String.CASE_INSENSITIVE_ORDER);
+            final ArraySet<String> second = new ArraySet<>(randomStrings(randomSize()), String.CASE_INSENSITIVE_ORDER);
+            assertOperations(first, second, () -> randomStrings(1).get(0));
+            assertOperations(second, first, () -> randomStrings(1).get(0));
+        }
+    }
+
+    @Test
+    void test3_galloping() {
+        final ArraySet<String> large = new ArraySet<>(List.of("a", "b", "c", "d", "e", "f", "g", "h", "i", "j"),
+                String.CASE_INSENSITIVE_ORDER);
+        final ArraySet<String> small = new ArraySet<>(List.of("C"), String.CASE_INSENSITIVE_ORDER);
+        assertEquals(List.of("a", "b", "c", "d", "e", "f", "g", "h", "i", "j"), new ArrayList<>(large.union(small)));
+        assertEquals(List.of("C"), new ArrayList<>(small.union(large)).subList(2, 3));
+        assertEquals(List.of("c"), new ArrayList<>(large.intersection(small)));
+        assertEquals(List.of("C"), new ArrayList<>(small.intersection(large)));
+        assertEquals(9, large.difference(small).size());
+        assertTrue(small.difference(large).isEmpty());
+    }
+
+    private int randomSize() {
+        return random.nextInt(4) == 0 ? random.nextInt(5) : random.nextInt(300);
+    }
+
+    private List<String> randomStrings(final int size) {
+        final List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final char letter = (char) ('a' + random.nextInt(26));
+            final char second = (char) ('a' + random.nextInt(26));
+            final String string = "" + letter + second;
+            list.add(random.nextBoolean() ? string.toUpperCase() : string);
+        }
+        return list;
+    }
+
+    private <E> void assertOperations(final ArraySet<E> set, final Collection<E> other, final Supplier<E> values) {
+        final NavigableSet<E> union = new TreeSet<>(set.comparator());
+        union.addAll(set);
+        union.addAll(other);
+        assertSameViews(union, set.union(other), values, random);
+
+        final NavigableSet<E> intersection = new TreeSet<>(set.comparator());
+        final NavigableSet<E> difference = new TreeSet<>(set.comparator());
+        final NavigableSet<E> otherSet = new TreeSet<>(set.comparator());
+        otherSet.addAll(other);
+        for (E element : set) {
+            (otherSet.contains(element) ? intersection : difference).add(element);
+        }
+        assertSameViews(intersection, set.intersection(other), values, random);
+        assertSameViews(difference, set.difference(other), values, random);
+    }
+}
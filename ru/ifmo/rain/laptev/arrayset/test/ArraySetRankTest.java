@@ -0,0 +1,75 @@
+package ru.ifmo.rain.laptev.arrayset.test;
+
+import org.junit.jupiter.api.Test;
+import ru.ifmo.rain.laptev.arrayset.ArraySet;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.arrayset.test.ArraySetTestUtils.*;
+
+class ArraySetRankTest {
+    private final Random random = new Random(8302);
+
+    @Test
+    void test1_rankAndSelectOnViews() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final int range = 1 + random.nextInt(1000);
+            ArraySet<Integer> set = new ArraySet<>(randomList(random, random.nextInt(300), range), randomComparator(random));
+            for (int depth = 0; depth < VIEW_DEPTH; depth++) {
+                assertRanks(set, range);
+                set = randomView(set, range);
+            }
+        }
+    }
+
+    @Test
+    void test2_selectOutOfBounds() {
+        final ArraySet<Integer> set = new ArraySet<>(List.of(1, 2, 3)).tailSet(2, true);
+        assertEquals(2, set.select(0));
+        assertEquals(3, set.descendingSet().select(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> set.select(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> set.select(-1));
+        assertEquals(0, set.countInRange(3, false, 2, true));
+    }
+
+    private void assertRanks(final ArraySet<Integer> set, final int range) {
+        final List<Integer> list = new ArrayList<>(set);
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals(list.get(i), set.select(i));
+            assertEquals(i, set.rank(list.get(i)));
+        }
+        for (int i = 0; i < PROBES; i++) {
+            final int value = random.nextInt(range + 2) - 1;
+            assertEquals(list.stream().filter(element -> compare(set, element, value) < 0).count(), set.rank(value),
+                    "rank " + value);
+            final int from = random.nextInt(range + 2) - 1;
+            final boolean fromInclusive = random.nextBoolean();
+            final boolean toInclusive = random.nextBoolean();
+            final long expected = list.stream()
+                    .filter(element -> compare(set, from, element) < (fromInclusive ? 1 : 0))
+                    .filter(element -> compare(set, element, value) < (toInclusive ? 1 : 0))
+                    .count();
+            assertEquals(expected, set.countInRange(from, fromInclusive, value, toInclusive),
+                    "countInRange " + from + " " + value);
+            if (compare(set, from, value) <= 0) {
+                assertEquals(expected, set.subSet(from, fromInclusive, value, toInclusive).size());
+            }
+        }
+    }
+
+    private ArraySet<Integer> randomView(final ArraySet<Integer> set, final int range) {
+        final int from = random.nextInt(range + 2) - 1;
+        final int to = random.nextInt(range + 2) - 1;
+        switch (random.nextInt(4)) {
+            case 0:
+                return compare(set, from, to) <= 0 ? set.subSet(from, true, to, false) : set.subSet(to, from);
+            case 1:
+                return set.headSet(to, random.nextBoolean());
+            case 2:
+                return set.tailSet(from);
+            default:
+                return set.descendingSet();
+        }
+    }
+}
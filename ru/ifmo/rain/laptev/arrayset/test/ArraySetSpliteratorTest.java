@@ -0,0 +1,85 @@
+package ru.ifmo.rain.laptev.arrayset.test;
+
+import org.junit.jupiter.api.Test;
+import ru.ifmo.rain.laptev.arrayset.ArraySet;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.arrayset.test.ArraySetTestUtils.*;
+
+class ArraySetSpliteratorTest {
+    private final Random random = new Random(2406);
+
+    @Test
+    void test1_parallelStreamOrder() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final int range = 1 + random.nextInt(100_000);
+            ArraySet<Integer> set = new ArraySet<>(randomList(random, random.nextInt(20_000), range), randomComparator(random));
+            if (random.nextBoolean()) {
+                set = set.descendingSet();
+            }
+            if (random.nextBoolean() && !set.isEmpty()) {
+                set = set.tailSet(set.select(random.nextInt(set.size())), random.nextBoolean());
+            }
+            final List<Integer> expected = new ArrayList<>(set);
+            assertEquals(expected, set.parallelStream().collect(Collectors.toList()));
+            assertEquals(expected.stream().mapToLong(Integer::longValue).sum(),
+                    set.parallelStream().mapToLong(Integer::longValue).sum());
+            assertEquals(expected.isEmpty() ? Optional.empty() : Optional.of(expected.get(0)),
+                    set.parallelStream().findFirst());
+        }
+    }
+
+    @Test
+    void test2_splitsInHalf() {
+        final List<Integer> list = randomList(random, 1000, 1_000_000);
+        final ArraySet<Integer> set = new ArraySet<>(list);
+        final List<Integer> collected = new ArrayList<>();
+        split(set.descendingSet().spliterator(), collected);
+        assertEquals(new ArrayList<>(set.descendingSet()), collected);
+    }
+
+    @Test
+    void test3_characteristics() {
+        final ArraySet<String> set = new ArraySet<>(List.of("b", "a", "c"), String.CASE_INSENSITIVE_ORDER);
+        for (ArraySet<String> view : List.of(set, set.descendingSet(), set.headSet("c"))) {
+            final Spliterator<String> spliterator = view.spliterator();
+            for (int characteristic : new int[]{Spliterator.SIZED, Spliterator.SUBSIZED, Spliterator.SORTED,
+                    Spliterator.DISTINCT, Spliterator.ORDERED, Spliterator.IMMUTABLE}) {
+                assertTrue(spliterator.hasCharacteristics(characteristic));
+            }
+            assertSame(view.comparator(), spliterator.getComparator());
+            assertEquals(view.size(), spliterator.getExactSizeIfKnown());
+        }
+        final Spliterator<Integer> empty = new ArraySet<Integer>().spliterator();
+        assertNull(empty.trySplit());
+        assertFalse(empty.tryAdvance(element -> fail()));
+        final Spliterator<Integer> single = new ArraySet<>(List.of(1)).spliterator();
+        assertNull(single.trySplit());
+        assertThrows(NullPointerException.class, () -> single.tryAdvance(null));
+    }
+
+    // Collects elements in order, checking that every split halves the remaining range
+    private void split(final Spliterator<Integer> spliterator, final List<Integer> collected) {
+        final long size = spliterator.estimateSize();
+        final Spliterator<Integer> prefix = spliterator.trySplit();
+        if (prefix == null) {
+            assertTrue(size <= 1);
+            spliterator.forEachRemaining(collected::add);
+            return;
+        }
+        assertEquals(size / 2, prefix.estimateSize());
+        assertEquals(size - size / 2, spliterator.estimateSize());
+        if (random.nextBoolean()) {
+            split(prefix, collected);
+        } else {
+            for (long i = prefix.estimateSize(); i > 0; i--) {
+                assertTrue(prefix.tryAdvance(collected::add));
+            }
+            assertFalse(prefix.tryAdvance(collected::add));
+        }
+        split(spliterator, collected);
+    }
+}
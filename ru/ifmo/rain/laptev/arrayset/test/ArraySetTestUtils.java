@@ -0,0 +1,114 @@
+package ru.ifmo.rain.laptev.arrayset.test;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArraySetTestUtils {
+    static final int ITERATIONS = 300;
+    static final int PROBES = 30;
+    static final int VIEW_DEPTH = 4;
+
+    private ArraySetTestUtils() {
+        throw new UnsupportedOperationException("Instance of class 'ArraySetTestUtils' is unsupported");
+    }
+
+    static List<Integer> randomList(final Random random, final int size, final int range) {
+        final List<Integer> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(random.nextInt(range));
+        }
+        return list;
+    }
+
+    static Comparator<Integer> randomComparator(final Random random) {
+        return random.nextBoolean() ? null : Comparator.reverseOrder();
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> int compare(final SortedSet<E> set, final E first, final E second) {
+        return set.comparator() == null
+                ? ((Comparable<? super E>) first).compareTo(second) : set.comparator().compare(first, second);
+    }
+
+    /**
+     * Checks contents and navigation of {@code actual} and of a chain of random views against {@code expected}.
+     */
+    static <E> void assertSameViews(NavigableSet<E> expected, NavigableSet<E> actual,
+                                    final Supplier<E> values, final Random random) {
+        for (int depth = 0; depth < VIEW_DEPTH; depth++) {
+            assertSameSet(expected, actual, values);
+            if (expected.isEmpty()) {
+                return;
+            }
+            E from = clamp(expected, values.get());
+            E to = clamp(expected, values.get());
+            if (compare(expected, from, to) > 0) {
+                final E swap = from;
+                from = to;
+                to = swap;
+            }
+            final boolean fromInclusive = random.nextBoolean();
+            final boolean toInclusive = random.nextBoolean();
+            switch (random.nextInt(5)) {
+                case 0:
+                    expected = expected.subSet(from, fromInclusive, to, toInclusive);
+                    actual = actual.subSet(from, fromInclusive, to, toInclusive);
+                    break;
+                case 1:
+                    expected = (NavigableSet<E>) expected.subSet(from, to);
+                    actual = (NavigableSet<E>) actual.subSet(from, to);
+                    break;
+                case 2:
+                    expected = expected.headSet(to, toInclusive);
+                    actual = actual.headSet(to, toInclusive);
+                    break;
+                case 3:
+                    expected = expected.tailSet(from, fromInclusive);
+                    actual = actual.tailSet(from, fromInclusive);
+                    break;
+                default:
+                    expected = expected.descendingSet();
+                    actual = actual.descendingSet();
+            }
+        }
+    }
+
+    static <E> void assertSameSet(final NavigableSet<E> expected, final NavigableSet<E> actual, final Supplier<E> values) {
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, actual);
+        assertEquals(actual, expected);
+        assertEquals(expected.hashCode(), actual.hashCode());
+        final List<E> descending = new ArrayList<>();
+        actual.descendingIterator().forEachRemaining(descending::add);
+        assertEquals(new ArrayList<>(expected.descendingSet()), descending);
+        if (expected.isEmpty()) {
+            assertThrows(NoSuchElementException.class, actual::first);
+            assertThrows(NoSuchElementException.class, actual::last);
+        } else {
+            assertEquals(expected.first(), actual.first());
+            assertEquals(expected.last(), actual.last());
+        }
+        for (int i = 0; i < PROBES; i++) {
+            final E value = values.get();
+            assertEquals(expected.contains(value), actual.contains(value), "contains " + value);
+            assertEquals(expected.lower(value), actual.lower(value), "lower " + value);
+            assertEquals(expected.floor(value), actual.floor(value), "floor " + value);
+            assertEquals(expected.ceiling(value), actual.ceiling(value), "ceiling " + value);
+            assertEquals(expected.higher(value), actual.higher(value), "higher " + value);
+        }
+    }
+
+    // Bounds of TreeSet views must lie within the bounds of the viewed set
+    private static <E> E clamp(final NavigableSet<E> set, final E value) {
+        if (compare(set, value, set.first()) < 0) {
+            return set.first();
+        }
+        if (compare(set, value, set.last()) > 0) {
+            return set.last();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,83 @@
+package ru.ifmo.rain.laptev.arrayset.test;
+
+import org.junit.jupiter.api.Test;
+import ru.ifmo.rain.laptev.arrayset.FrontCodedStringSet;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.arrayset.test.ArraySetTestUtils.*;
+
+class FrontCodedStringSetTest {
+    // Zero char, ASCII, two and three byte chars, both halves of a surrogate pair
+    private static final String ALPHABET = "\0abz\u00e9\u07ff\u0800\u044f\uffff\ud83d\ude00";
+
+    private final Random random = new Random(1925);
+
+    @Test
+    void test1_matchesTreeSet() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final List<String> list = randomStrings(random.nextInt(200), 1 + random.nextInt(8));
+            assertSameViews(new TreeSet<>(list), new FrontCodedStringSet(list), () -> randomString(8), random);
+        }
+    }
+
+    @Test
+    void test2_sharedPrefixes() {
+        // Long common prefixes make every string but block heads a short suffix
+        final String prefix = "\u0430".repeat(1000);
+        final List<String> list = new ArrayList<>();
+        for (String string : randomStrings(1000, 4)) {
+            list.add(prefix + string);
+            list.add(prefix.substring(random.nextInt(prefix.length())) + string);
+        }
+        list.add("");
+        list.add(prefix);
+        assertSameViews(new TreeSet<>(list), new FrontCodedStringSet(list),
+                () -> prefix.substring(random.nextInt(3)) + randomString(4), random);
+    }
+
+    @Test
+    void test3_concurrentLookups() {
+        final List<String> list = randomStrings(10_000, 6);
+        final NavigableSet<String> expected = new TreeSet<>(list);
+        final FrontCodedStringSet set = new FrontCodedStringSet(list);
+        final List<String> probes = randomStrings(10_000, 6);
+        IntStream.range(0, probes.size()).parallel().forEach(i -> {
+            final String probe = probes.get(i);
+            assertEquals(expected.contains(probe), set.contains(probe));
+            assertEquals(expected.floor(probe), set.floor(probe));
+            assertEquals(expected.higher(probe), set.descendingSet().lower(probe));
+        });
+        assertEquals(new ArrayList<>(expected), set.parallelStream().collect(Collectors.toList()));
+    }
+
+    @Test
+    void test4_emptyAndUnsupported() {
+        final FrontCodedStringSet set = new FrontCodedStringSet();
+        assertTrue(set.isEmpty());
+        assertNull(set.ceiling(""));
+        assertFalse(set.contains(1));
+        assertThrows(NoSuchElementException.class, set::first);
+        assertThrows(UnsupportedOperationException.class, set::pollFirst);
+        assertEquals(List.of(""), new ArrayList<>(new FrontCodedStringSet(List.of("", ""))));
+    }
+
+    private List<String> randomStrings(final int size, final int maxLength) {
+        final List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(randomString(maxLength));
+        }
+        return list;
+    }
+
+    private String randomString(final int maxLength) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = random.nextInt(maxLength + 1); i > 0; i--) {
+            builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return builder.toString();
+    }
+}
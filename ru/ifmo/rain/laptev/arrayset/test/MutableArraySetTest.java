@@ -0,0 +1,225 @@
+package ru.ifmo.rain.laptev.arrayset.test;
+
+import org.junit.jupiter.api.Test;
+import ru.ifmo.rain.laptev.arrayset.MutableArraySet;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.arrayset.test.ArraySetTestUtils.*;
+
+class MutableArraySetTest {
+    private static final int SETS = 50;
+    private static final int OPERATIONS = 1000;
+
+    private final Random random = new Random(3617);
+
+    @Test
+    void test1_updatesMatchTreeSet() {
+        for (int i = 0; i < SETS; i++) {
+            final int range = 1 + random.nextInt(2000);
+            final Comparator<Integer> comparator = randomComparator(random);
+            final List<Integer> initial = randomList(random, random.nextInt(500), range);
+            final NavigableSet<Integer> expected = new TreeSet<>(comparator);
+            expected.addAll(initial);
+            final MutableArraySet<Integer> actual = new MutableArraySet<>(initial, comparator);
+            for (int operation = 0; operation < OPERATIONS; operation++) {
+                final int value = random.nextInt(range + 2) - 1;
+                switch (random.nextInt(12)) {
+                    case 0:
+                    case 1:
+                    case 2:
+                        assertEquals(expected.add(value), actual.add(value), "add " + value);
+                        break;
+                    case 3:
+                    case 4:
+                        assertEquals(expected.remove(value), actual.remove(value), "remove " + value);
+                        break;
+                    case 5:
+                        assertEquals(expected.pollFirst(), actual.pollFirst());
+                        break;
+                    case 6:
+                        assertEquals(expected.pollLast(), actual.pollLast());
+                        break;
+                    case 7:
+                        final List<Integer> added = randomList(random, random.nextInt(200), range);
+                        assertEquals(expected.addAll(added), actual.addAll(added));
+                        break;
+                    case 8:
+                        iteratorRemove(expected, actual);
+                        break;
+                    case 9:
+                        actual.compact();
+                        break;
+                    default:
+                        updateView(expected, actual, range);
+                }
+                if (operation % 100 == 0) {
+                    assertSameSet(expected, actual, () -> random.nextInt(range + 2) - 1);
+                }
+            }
+            assertSameViews(expected, actual, () -> random.nextInt(range + 2) - 1, random);
+        }
+    }
+
+    @Test
+    void test2_compactKeepsContents() {
+        final MutableArraySet<Integer> set = new MutableArraySet<>();
+        final NavigableSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            final int value = random.nextInt(50_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+        }
+        set.compact();
+        assertSameViews(expected, set, () -> random.nextInt(50_001), random);
+    }
+
+    @Test
+    void test3_viewRangeChecks() {
+        final MutableArraySet<Integer> set = new MutableArraySet<>(List.of(1, 3, 5, 7));
+        final NavigableSet<Integer> head = set.headSet(5, false);
+        assertThrows(IllegalArgumentException.class, () -> head.add(6));
+        assertTrue(head.add(2));
+        assertTrue(set.contains(2));
+        assertTrue(set.remove(1));
+        assertEquals(List.of(2, 3), new ArrayList<>(head));
+        assertEquals(3, head.pollLast());
+        assertEquals(List.of(2, 5, 7), new ArrayList<>(set));
+        final Iterator<Integer> iterator = set.iterator();
+        assertThrows(IllegalStateException.class, iterator::remove);
+    }
+
+    @Test
+    void test4_iteratorRemovalsAreMerged() {
+        final List<int[]> initial = new ArrayList<>();
+        final List<WeakReference<int[]>> removed = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            initial.add(new int[]{i});
+            if (i % 2 == 0) {
+                removed.add(new WeakReference<>(initial.get(i)));
+            }
+        }
+        final MutableArraySet<int[]> set = new MutableArraySet<>(initial, Comparator.comparingInt(element -> element[0]));
+        initial.clear();
+        assertTrue(set.removeIf(element -> element[0] % 2 == 0));
+        assertEquals(5_000, set.size());
+
+        // Removed elements are dropped from the array once the iteration ends, not kept behind removal marks
+        for (int attempt = 0; attempt < 10 && removed.stream().anyMatch(reference -> reference.get() != null); attempt++) {
+            System.gc();
+        }
+        assertTrue(removed.stream().allMatch(reference -> reference.get() == null));
+    }
+
+    @Test
+    void test5_removeLastAfterIteration() {
+        final NavigableSet<Integer> expected = new TreeSet<>();
+        final List<Integer> initial = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            initial.add(i);
+        }
+        expected.addAll(initial);
+        final MutableArraySet<Integer> actual = new MutableArraySet<>(initial);
+        final Iterator<Integer> expectedIterator = expected.iterator();
+        final Iterator<Integer> actualIterator = actual.iterator();
+        while (expectedIterator.hasNext()) {
+            assertTrue(actualIterator.hasNext());
+            assertEquals(expectedIterator.next(), actualIterator.next());
+            // The last element is removed after the iteration ends
+            if (random.nextInt(4) != 0 && expectedIterator.hasNext()) {
+                expectedIterator.remove();
+                actualIterator.remove();
+            }
+        }
+        assertFalse(actualIterator.hasNext());
+        expectedIterator.remove();
+        actualIterator.remove();
+        assertThrows(IllegalStateException.class, actualIterator::remove);
+        assertSameSet(expected, actual, () -> random.nextInt(1002) - 1);
+        actual.retainAll(List.of(1, 2, 3));
+        expected.retainAll(List.of(1, 2, 3));
+        assertSameSet(expected, actual, () -> random.nextInt(6) - 1);
+        actual.clear();
+        assertTrue(actual.isEmpty());
+    }
+
+    @Test
+    void test6_readdedElementReplacesRemovedOne() {
+        final MutableArraySet<String> set = new MutableArraySet<>(List.of("a", "b", "c"), String.CASE_INSENSITIVE_ORDER);
+        assertTrue(set.remove("b"));
+        assertTrue(set.add("B"));
+        assertEquals(List.of("a", "B", "c"), new ArrayList<>(set));
+        assertEquals("B", set.ceiling("b"));
+        set.compact();
+        assertEquals(List.of("a", "B", "c"), new ArrayList<>(set));
+    }
+
+    private void iteratorRemove(final NavigableSet<Integer> expected, final NavigableSet<Integer> actual) {
+        final Iterator<Integer> expectedIterator = expected.iterator();
+        final Iterator<Integer> actualIterator = actual.iterator();
+        while (expectedIterator.hasNext()) {
+            assertTrue(actualIterator.hasNext());
+            assertEquals(expectedIterator.next(), actualIterator.next());
+            if (random.nextInt(20) == 0) {
+                expectedIterator.remove();
+                actualIterator.remove();
+            }
+        }
+        assertFalse(actualIterator.hasNext());
+    }
+
+    // Updates go through a random view and must show up in the whole set
+    private void updateView(final NavigableSet<Integer> expected, final NavigableSet<Integer> actual, final int range) {
+        int from = random.nextInt(range + 2) - 1;
+        int to = random.nextInt(range + 2) - 1;
+        if (compare(expected, from, to) > 0) {
+            final int swap = from;
+            from = to;
+            to = swap;
+        }
+        final boolean fromInclusive = random.nextBoolean();
+        final boolean toInclusive = random.nextBoolean();
+        NavigableSet<Integer> expectedView;
+        NavigableSet<Integer> actualView;
+        switch (random.nextInt(4)) {
+            case 0:
+                expectedView = expected.subSet(from, fromInclusive, to, toInclusive);
+                actualView = actual.subSet(from, fromInclusive, to, toInclusive);
+                break;
+            case 1:
+                expectedView = expected.headSet(to, toInclusive);
+                actualView = actual.headSet(to, toInclusive);
+                break;
+            case 2:
+                expectedView = expected.tailSet(from, fromInclusive);
+                actualView = actual.tailSet(from, fromInclusive);
+                break;
+            default:
+                expectedView = expected.descendingSet();
+                actualView = actual.descendingSet();
+        }
+        if (random.nextBoolean()) {
+            expectedView = expectedView.descendingSet();
+            actualView = actualView.descendingSet();
+        }
+        assertSameSet(expectedView, actualView, () -> random.nextInt(range + 2) - 1);
+        final int value = random.nextInt(range);
+        final NavigableSet<Integer> view = actualView;
+        try {
+            assertEquals(expectedView.add(value), view.add(value));
+        } catch (IllegalArgumentException e) {
+            assertThrows(IllegalArgumentException.class, () -> view.add(value));
+        }
+        if (random.nextBoolean()) {
+            assertEquals(expectedView.pollFirst(), actualView.pollFirst());
+        }
+        if (random.nextBoolean()) {
+            assertEquals(expectedView.remove(value), actualView.remove(value));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package ru.ifmo.rain.laptev.arrayset.test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.ifmo.rain.laptev.arrayset.OffHeapLongSet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.arrayset.test.ArraySetTestUtils.*;
+
+class OffHeapLongSetTest {
+    private final Random random = new Random(6021);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void test1_matchesTreeSet() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final int range = 1 + random.nextInt(1000);
+            final long base = random.nextBoolean() ? Long.MIN_VALUE : Long.MAX_VALUE - range;
+            final long[] array = randomArray(base, range);
+            final NavigableSet<Long> expected = toTreeSet(array);
+            final Supplier<Long> values = () -> base + random.nextInt(range + 1);
+            assertSameViews(expected, new OffHeapLongSet(array), values, random);
+            assertSameViews(expected, new OffHeapLongSet(expected), values, random);
+        }
+    }
+
+    @Test
+    void test2_writeAndLoad() throws IOException {
+        for (int i = 0; i < 50; i++) {
+            final long[] array = randomArray(-500, 1000);
+            final OffHeapLongSet set = new OffHeapLongSet(array);
+            final Path file = directory.resolve("set" + i);
+            set.write(file);
+            assertEquals(set.sizeLong() * Long.BYTES, Files.size(file));
+            final OffHeapLongSet loaded = OffHeapLongSet.load(file);
+            assertSameViews(toTreeSet(array), loaded, () -> (long) random.nextInt(1002) - 501, random);
+
+            final OffHeapLongSet view = set.subSet(-100, true, 100, false).descendingSet();
+            // The file of the loaded set must not be truncated while it is mapped
+            final Path viewFile = directory.resolve("view" + i);
+            view.write(viewFile);
+            assertEquals(new ArrayList<>(view.descendingSet()), new ArrayList<>(OffHeapLongSet.load(viewFile)));
+        }
+    }
+
+    @Test
+    void test3_loadByteOrder() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(3 * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(-7).putLong(1).putLong(Long.MAX_VALUE);
+        final Path file = directory.resolve("little");
+        Files.write(file, buffer.array());
+        final OffHeapLongSet set = OffHeapLongSet.load(file, ByteOrder.LITTLE_ENDIAN);
+        assertEquals(List.of(-7L, 1L, Long.MAX_VALUE), new ArrayList<>(set));
+        assertEquals(1, set.ceilingLong(0));
+        assertEquals(Long.MAX_VALUE, set.descendingSet().firstLong());
+
+        Files.write(file, new byte[Long.BYTES + 1]);
+        assertThrows(IOException.class, () -> OffHeapLongSet.load(file));
+
+        Files.write(file, new byte[0]);
+        assertTrue(OffHeapLongSet.load(file).isEmpty());
+    }
+
+    @Test
+    void test4_primitiveNavigation() {
+        final OffHeapLongSet set = new OffHeapLongSet(9, 1, 5, 5);
+        assertEquals(3, set.sizeLong());
+        assertTrue(set.containsLong(5));
+        assertEquals(5, set.floorLong(6));
+        assertEquals(9, set.descendingSet().floorLong(6));
+        assertEquals(1, set.descendingSet().higherLong(5));
+        assertThrows(NoSuchElementException.class, () -> set.lowerLong(1));
+        assertThrows(NoSuchElementException.class, () -> new OffHeapLongSet().firstLong());
+        assertThrows(UnsupportedOperationException.class, set::pollFirst);
+        final PrimitiveIterator.OfLong iterator = set.descendingIterator();
+        assertEquals(9, iterator.nextLong());
+        assertEquals(5, iterator.nextLong());
+        assertEquals(1, iterator.nextLong());
+        assertFalse(iterator.hasNext());
+    }
+
+    private long[] randomArray(final long base, final int range) {
+        final long[] array = new long[random.nextInt(300)];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = base + random.nextInt(range);
+        }
+        return array;
+    }
+
+    private static NavigableSet<Long> toTreeSet(final long[] array) {
+        final NavigableSet<Long> set = new TreeSet<>();
+        for (long value : array) {
+            set.add(value);
+        }
+        return set;
+    }
+}
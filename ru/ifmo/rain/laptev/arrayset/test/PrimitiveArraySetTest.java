@@ -0,0 +1,61 @@
+package ru.ifmo.rain.laptev.arrayset.test;
+
+import org.junit.jupiter.api.Test;
+import ru.ifmo.rain.laptev.arrayset.IntArraySet;
+import ru.ifmo.rain.laptev.arrayset.LongArraySet;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.arrayset.test.ArraySetTestUtils.ITERATIONS;
+import static ru.ifmo.rain.laptev.arrayset.test.ArraySetTestUtils.assertSameViews;
+import static ru.ifmo.rain.laptev.arrayset.test.ArraySetTestUtils.randomList;
+
+class PrimitiveArraySetTest {
+    private final Random random = new Random(4875);
+
+    @Test
+    void test1_intSetMatchesTreeSet() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final int range = 1 + random.nextInt(100);
+            final List<Integer> list = randomList(random, random.nextInt(50), range);
+            final int[] array = list.stream().mapToInt(Integer::intValue).toArray();
+            assertSameViews(new TreeSet<>(list), new IntArraySet(array), () -> random.nextInt(range + 2) - 1, random);
+            assertSameViews(new TreeSet<>(list), new IntArraySet(list), () -> random.nextInt(range + 2) - 1, random);
+        }
+    }
+
+    @Test
+    void test2_longSetMatchesTreeSet() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            final int range = 1 + random.nextInt(100);
+            final long[] array = new long[random.nextInt(50)];
+            final NavigableSet<Long> expected = new TreeSet<>();
+            for (int j = 0; j < array.length; j++) {
+                array[j] = Long.MAX_VALUE - random.nextInt(range);
+                expected.add(array[j]);
+            }
+            assertSameViews(expected, new LongArraySet(array), () -> Long.MAX_VALUE - random.nextInt(range + 1), random);
+        }
+    }
+
+    @Test
+    void test3_primitiveNavigation() {
+        final IntArraySet set = new IntArraySet(9, 1, 5, 5);
+        assertArrayEquals(new int[]{1, 5, 9}, set.toIntArray());
+        assertEquals(5, set.floorInt(6));
+        assertEquals(9, set.ceilingInt(6));
+        assertEquals(9, set.descendingSet().floorInt(6));
+        assertEquals(1, set.descendingSet().higherInt(5));
+        assertTrue(set.headSet(5, true).containsInt(5));
+        assertFalse(set.headSet(5, false).containsInt(5));
+        assertThrows(NoSuchElementException.class, () -> set.lowerInt(1));
+        assertThrows(NoSuchElementException.class, () -> new IntArraySet().firstInt());
+        assertThrows(UnsupportedOperationException.class, set::pollFirst);
+
+        final LongArraySet longs = new LongArraySet(Long.MIN_VALUE, 0, Long.MAX_VALUE);
+        assertEquals(0, longs.higherLong(Long.MIN_VALUE));
+        assertEquals(Long.MAX_VALUE, longs.descendingSet().lowerLong(0));
+        assertThrows(NoSuchElementException.class, () -> longs.higherLong(Long.MAX_VALUE));
+    }
+}
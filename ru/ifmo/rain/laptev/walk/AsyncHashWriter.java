@@ -0,0 +1,225 @@
+package ru.ifmo.rain.laptev.walk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes {@code "<hex hash> <path>"} lines from a dedicated thread, tree hashes are written
+ * as {@code "tree:<hex hash> <path>"}. Groups of records are followed by an empty line.
+ * Records are published into a bounded ring buffer, callers block while it is full.
+ * The writer thread encodes whole batches of records into a large direct buffer
+ * and writes it to the channel when it fills up.
+ */
+class AsyncHashWriter implements HashWriter {
+    private static final int DEFAULT_CAPACITY = 1 << 14;
+    private static final int BUFF_SIZE = 1 << 20;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TREE_MARKER = "tree:".getBytes(StandardCharsets.US_ASCII);
+
+    private final WritableByteChannel channel;
+    private final byte[][] hashes;
+    private final String[] files;
+    private final boolean[] trees;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFF_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final Thread writerThread;
+    private long head;
+    private long tail;
+    private long syncTarget;
+    private long synced;
+    private boolean closed;
+    private Throwable error;
+
+    AsyncHashWriter(final WritableByteChannel channel, final int hashLength) {
+        this(channel, hashLength, DEFAULT_CAPACITY);
+    }
+
+    AsyncHashWriter(final WritableByteChannel channel, final int hashLength, final int capacity) {
+        this.channel = channel;
+        this.hashes = new byte[capacity][hashLength];
+        this.files = new String[capacity];
+        this.trees = new boolean[capacity];
+        this.writerThread = new Thread(this::run, "hash-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void write(final byte[] hash, final String file, final boolean tree) throws IOException {
+        publish(hash, file, tree);
+    }
+
+    @Override
+    public void endGroup() throws IOException {
+        publish(null, null, false);
+    }
+
+    // Records without a file are group ends
+    private void publish(final byte[] hash, final String file, final boolean tree) throws IOException {
+        final int slot;
+        synchronized (this) {
+            try {
+                while (head - tail == files.length && error == null) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for output");
+            }
+            if (error != null) {
+                throw new IOException("Error occurs writing output", error);
+            }
+            slot = (int) (head % files.length);
+            if (hash != null) {
+                System.arraycopy(hash, 0, hashes[slot], 0, hash.length);
+            }
+            files[slot] = file;
+            trees[slot] = tree;
+            head++;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits until all records written before the call are written to the channel.
+     */
+    void sync() throws IOException {
+        synchronized (this) {
+            final long target = head;
+            syncTarget = Math.max(syncTarget, target);
+            notifyAll();
+            try {
+                while (synced < target && error == null) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while flushing output");
+            }
+            if (error != null) {
+                throw new IOException("Error occurs writing output", error);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while flushing output");
+        }
+        if (error != null) {
+            throw new IOException("Error occurs writing output", error);
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                final long from;
+                final long to;
+                synchronized (this) {
+                    while (head == tail && !closed && syncTarget <= synced) {
+                        wait();
+                    }
+                    if (head == tail && closed) {
+                        break;
+                    }
+                    from = tail;
+                    to = head;
+                }
+                // Slots in [from, to) are not reused by producers until tail is moved
+                for (long i = from; i < to; i++) {
+                    final int slot = (int) (i % files.length);
+                    if (files[slot] == null) {
+                        encodeSeparator();
+                    } else {
+                        encode(hashes[slot], files[slot], trees[slot]);
+                    }
+                    files[slot] = null;
+                }
+                final boolean sync;
+                synchronized (this) {
+                    tail = to;
+                    sync = syncTarget > synced;
+                    notifyAll();
+                }
+                if (sync) {
+                    flush();
+                    synchronized (this) {
+                        synced = to;
+                        notifyAll();
+                    }
+                }
+            }
+            flush();
+        } catch (InterruptedException e) {
+            fail(new InterruptedIOException("Writer thread interrupted"));
+        } catch (Throwable e) {
+            // Producers wait for the writer thread, so any failure has to reach them
+            fail(e);
+        }
+    }
+
+    private synchronized void fail(final Throwable e) {
+        error = e;
+        notifyAll();
+    }
+
+    private void encode(final byte[] hash, final String file, final boolean tree) throws IOException {
+        if (buffer.remaining() < TREE_MARKER.length + 2 * hash.length + 1) {
+            flush();
+        }
+        if (tree) {
+            buffer.put(TREE_MARKER);
+        }
+        for (byte b : hash) {
+            buffer.put(HEX_DIGITS[(b >> 4) & 0xf]).put(HEX_DIGITS[b & 0xf]);
+        }
+        buffer.put((byte) ' ');
+        final CharBuffer chars = CharBuffer.wrap(file);
+        encoder.reset();
+        CoderResult result = encoder.encode(chars, buffer, true);
+        while (result.isOverflow()) {
+            flush();
+            result = encoder.encode(chars, buffer, true);
+        }
+        result = encoder.flush(buffer);
+        while (result.isOverflow()) {
+            flush();
+            result = encoder.flush(buffer);
+        }
+        encodeSeparator();
+    }
+
+    private void encodeSeparator() throws IOException {
+        if (buffer.remaining() < LINE_SEPARATOR.length) {
+            flush();
+        }
+        buffer.put(LINE_SEPARATOR);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,333 @@
+package ru.ifmo.rain.laptev.walk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Walks file trees reading many files at once through {@link AsynchronousFileChannel}, for storage
+ * with high request latency. The calling thread visits files and starts their reads, completions feed
+ * each file's hash state in file order and issue the next reads, hashes are written in visit order.
+ *
+ * <p>Reads go into a bounded set of buffers: a file being read holds at least one of them and reads ahead
+ * into free ones, the calling thread waits for a buffer to be returned when none is free.
+ * Files hashed as trees and files that are not regular are hashed synchronously.
+ * In link-aware mode a file whose key is already being read completes with the hash of that read.
+ *
+ * <p>Where the platform has no native asynchronous file I/O, as on Linux, {@link AsynchronousFileChannel}
+ * performs blocking reads on the threads of its executor. Reads in flight are then capped by the thread count
+ * of the given executor, and the default executor creates threads without bound.
+ */
+class AsyncWalker {
+    static final int BUFF_SIZE = 256 << 10;
+    private static final int MAX_READ_AHEAD = 4;
+
+    private final FileVisitorHash fileVisitorHash;
+    private final FileHasher fileHasher;
+    private final ExecutorService executor;
+    private final Set<FileVisitOption> visitOptions;
+    private final int maxBuffers;
+    private final AtomicInteger createdBuffers = new AtomicInteger();
+    private final BlockingQueue<ByteBuffer> freeBuffers = new LinkedBlockingQueue<>();
+    private final Queue<HashState> freeStates = new ConcurrentLinkedQueue<>();
+    private final Deque<Pending> pending = new ArrayDeque<>();
+
+    /**
+     * @param outstandingBytes total size of read buffers
+     * @param executor executor running completions and, on platforms without asynchronous file I/O, the reads
+     *                 themselves; the default pool of {@link AsynchronousFileChannel} if {@code null}
+     */
+    AsyncWalker(final FileVisitorHash fileVisitorHash, final FileHasher fileHasher, final long outstandingBytes,
+                final ExecutorService executor, final Set<FileVisitOption> visitOptions) {
+        this.fileVisitorHash = fileVisitorHash;
+        this.fileHasher = fileHasher;
+        this.executor = executor;
+        this.visitOptions = visitOptions;
+        this.maxBuffers = (int) Math.max(1, Math.min(Integer.MAX_VALUE, outstandingBytes / BUFF_SIZE));
+    }
+
+    void walk(final Path root) throws IOException {
+        try {
+            Files.walkFileTree(root, visitOptions, Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attributes) {
+                    return fileVisitorHash.preVisitDirectory(dir, attributes);
+                }
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) throws IOException {
+                    visit(file, attributes);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path file, final IOException exception) throws IOException {
+                    add(file, null, CompletableFuture.completedFuture(false));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(final Path dir, final IOException exception) throws IOException {
+                    return fileVisitorHash.postVisitDirectory(dir, exception);
+                }
+            });
+        } finally {
+            while (!pending.isEmpty()) {
+                writeHead();
+            }
+        }
+    }
+
+    private void visit(final Path file, final BasicFileAttributes attributes) throws IOException {
+        final byte[] digest = fileVisitorHash.newDigest();
+        if (fileVisitorHash.getCached(file, attributes, digest)) {
+            add(file, digest, CompletableFuture.completedFuture(fileHasher.isTreeHashed(attributes.size())));
+        } else if (!attributes.isRegularFile() || fileHasher.isTreeHashed(attributes.size())) {
+            add(file, digest, CompletableFuture.completedFuture(fileVisitorHash.hashFile(file, attributes, digest)));
+        } else {
+            add(file, digest, fileVisitorHash.hashFileAsync(file, attributes, digest, owned -> read(file, attributes, owned)));
+        }
+        while (!pending.isEmpty() && pending.peek().result.isDone()) {
+            writeHead();
+        }
+    }
+
+    private CompletableFuture<Boolean> read(final Path file, final BasicFileAttributes attributes,
+                                            final byte[] digest) throws IOException {
+        final ByteBuffer buffer = acquireBuffer();
+        final FileRead read = new FileRead(file, attributes, digest);
+        read.start(buffer);
+        return read.result;
+    }
+
+    // Cached files waiting behind a slow one are bounded as well
+    private void add(final Path file, final byte[] digest, final CompletableFuture<Boolean> result) throws IOException {
+        while (pending.size() >= 4 * maxBuffers) {
+            writeHead();
+        }
+        pending.add(new Pending(file.toString(), digest, result));
+    }
+
+    private void writeHead() throws IOException {
+        final Pending head = pending.remove();
+        final boolean tree = head.result.join();
+        if (head.digest == null) {
+            fileVisitorHash.processException(head.file);
+        } else {
+            fileVisitorHash.writeHash(head.digest, head.file, tree);
+        }
+    }
+
+    // Buffers of failed files may be returned after the files are written, so the buffers are awaited, not the files
+    private ByteBuffer acquireBuffer() throws IOException {
+        final ByteBuffer buffer = pollBuffer();
+        if (buffer != null) {
+            return buffer;
+        }
+        while (!pending.isEmpty() && pending.peek().result.isDone()) {
+            writeHead();
+        }
+        try {
+            return freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a read buffer");
+        }
+    }
+
+    private ByteBuffer pollBuffer() {
+        final ByteBuffer buffer = freeBuffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (createdBuffers.getAndIncrement() < maxBuffers) {
+            return ByteBuffer.allocateDirect(BUFF_SIZE);
+        }
+        createdBuffers.decrementAndGet();
+        return null;
+    }
+
+    private class FileRead implements CompletionHandler<Integer, FileRead.Read> {
+        private final Path file;
+        private final BasicFileAttributes attributes;
+        private final byte[] digest;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        private final Map<Long, ByteBuffer> ready = new HashMap<>();
+        private final long start = System.nanoTime();
+        private AsynchronousFileChannel channel;
+        private HashState state;
+        private long size;
+        private long next;
+        private long hashed;
+        private int outstanding;
+        private boolean failed;
+
+        private FileRead(final Path file, final BasicFileAttributes attributes, final byte[] digest) {
+            this.file = file;
+            this.attributes = attributes;
+            this.digest = digest;
+        }
+
+        private void start(final ByteBuffer buffer) {
+            try {
+                channel = AsynchronousFileChannel.open(file, EnumSet.of(StandardOpenOption.READ), executor);
+                size = channel.size();
+            } catch (IOException e) {
+                freeBuffers.add(buffer);
+                fail();
+                return;
+            }
+            state = freeStates.poll();
+            if (state == null) {
+                state = fileHasher.getAlgorithm().newState();
+            }
+            state.reset();
+            if (size == 0) {
+                freeBuffers.add(buffer);
+                finish();
+                return;
+            }
+            final List<Read> reads = new ArrayList<>();
+            synchronized (this) {
+                reads.add(newRead(buffer));
+                ByteBuffer extra;
+                while (reads.size() < MAX_READ_AHEAD && next < size && (extra = pollBuffer()) != null) {
+                    reads.add(newRead(extra));
+                }
+            }
+            reads.forEach(this::issue);
+        }
+
+        private Read newRead(final ByteBuffer buffer) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), size - next));
+            final Read read = new Read(buffer, next);
+            next += buffer.limit();
+            outstanding++;
+            return read;
+        }
+
+        private void issue(final Read read) {
+            channel.read(read.buffer, read.position + read.buffer.position(), read, this);
+        }
+
+        @Override
+        public void completed(final Integer count, final Read read) {
+            if (count >= 0 && read.buffer.hasRemaining()) {
+                issue(read);
+                return;
+            }
+            final List<Read> reads = new ArrayList<>();
+            boolean finished = false;
+            synchronized (this) {
+                outstanding--;
+                if (failed) {
+                    freeBuffers.add(read.buffer);
+                    return;
+                }
+                if (count < 0) {
+                    // The file was truncated during the read
+                    size = Math.min(size, read.position + read.buffer.position());
+                    next = Math.min(next, size);
+                }
+                ready.put(read.position, read.buffer);
+                ByteBuffer buffer;
+                while ((buffer = ready.remove(hashed)) != null) {
+                    buffer.flip();
+                    hashed += buffer.remaining();
+                    state.update(buffer);
+                    if (next < size) {
+                        reads.add(newRead(buffer));
+                    } else {
+                        freeBuffers.add(buffer);
+                    }
+                }
+                if (hashed >= size && outstanding == 0) {
+                    ready.values().forEach(freeBuffers::add);
+                    ready.clear();
+                    finished = true;
+                }
+            }
+            if (finished) {
+                finish();
+            } else {
+                reads.forEach(this::issue);
+            }
+        }
+
+        @Override
+        public void failed(final Throwable exception, final Read read) {
+            final boolean first;
+            synchronized (this) {
+                outstanding--;
+                freeBuffers.add(read.buffer);
+                ready.values().forEach(freeBuffers::add);
+                ready.clear();
+                first = !failed;
+                failed = true;
+            }
+            if (first) {
+                fail();
+            }
+        }
+
+        private void finish() {
+            state.digest(digest, 0);
+            freeStates.add(state);
+            close();
+            fileVisitorHash.hashed(file, attributes, digest, System.nanoTime() - start);
+            result.complete(false);
+        }
+
+        private void fail() {
+            if (state != null) {
+                freeStates.add(state);
+            }
+            close();
+            fileVisitorHash.hashFailed(digest);
+            result.complete(false);
+        }
+
+        private void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        private class Read {
+            private final ByteBuffer buffer;
+            private final long position;
+
+            private Read(final ByteBuffer buffer, final long position) {
+                this.buffer = buffer;
+                this.position = position;
+            }
+        }
+    }
+
+    private static class Pending {
+        private final String file;
+        private final byte[] digest;
+        private final CompletableFuture<Boolean> result;
+
+        private Pending(final String file, final byte[] digest, final CompletableFuture<Boolean> result) {
+            this.file = file;
+            this.digest = digest;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package ru.ifmo.rain.laptev.walk;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically saves the position of the walk, so an interrupted run can be resumed.
+ * The position is the index of the input line being walked, the number of records written for it and
+ * the last written path. Before saving, the output is synced, so the saved output length ends on a record.
+ *
+ * <p>A resumed run truncates the output to the saved length, skips input lines walked before and discards
+ * the records already written for the current line, then appends to the output.
+ * If the current line no longer produces the saved records, the resume fails rather than
+ * duplicate or lose output lines. The checkpoint file is deleted once the walk completes.
+ *
+ * <p>File layout: {@code int} magic, {@code int} version, {@code long} line index, {@code long} record count,
+ * {@code long} output length and the last path in modified UTF-8.
+ */
+class Checkpoint implements HashWriter {
+    static final long DEFAULT_INTERVAL_SECONDS = 5;
+    private static final int MAGIC = 0x57434b50;
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final long intervalNanos;
+    private final long savedLine;
+    private final long savedRecords;
+    private final String savedPath;
+    private final long outputLength;
+    private AsyncHashWriter writer;
+    private FileChannel channel;
+    private long line = -1;
+    private long records;
+    private String lastPath = "";
+    private long skipped;
+    private long nextSave;
+
+    private Checkpoint(final Path file, final long intervalSeconds, final long savedLine, final long savedRecords,
+                       final String savedPath, final long outputLength) {
+        this.file = file;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(intervalSeconds);
+        this.savedLine = savedLine;
+        this.savedRecords = savedRecords;
+        this.savedPath = savedPath;
+        this.outputLength = outputLength;
+    }
+
+    /**
+     * Loads the saved position, a missing or foreign checkpoint file starts the walk from the beginning.
+     */
+    static Checkpoint open(final Path file, final long intervalSeconds) throws IOException {
+        if (Files.isRegularFile(file)) {
+            try (DataInputStream input = new DataInputStream(Files.newInputStream(file))) {
+                if (input.readInt() == MAGIC && input.readInt() == VERSION) {
+                    final long line = input.readLong();
+                    final long records = input.readLong();
+                    final long length = input.readLong();
+                    return new Checkpoint(file, intervalSeconds, line, records, input.readUTF(), length);
+                }
+            } catch (EOFException e) {
+                // Falls through to a fresh walk, the checkpoint is always replaced atomically
+            }
+        }
+        return new Checkpoint(file, intervalSeconds, -1, 0, "", 0);
+    }
+
+    boolean isResumed() {
+        return savedLine >= 0;
+    }
+
+    /**
+     * Output length at the saved position, the output is truncated to it before resuming.
+     */
+    long getOutputLength() {
+        return outputLength;
+    }
+
+    /**
+     * Starts writing records to {@code writer}, which writes to the end of {@code channel}.
+     */
+    void start(final AsyncHashWriter writer, final FileChannel channel) {
+        this.writer = writer;
+        this.channel = channel;
+        this.nextSave = System.nanoTime() + intervalNanos;
+    }
+
+    /**
+     * Starts the walk of the input line with given index.
+     *
+     * @return {@code false} if the line was walked completely before
+     */
+    boolean startLine(final long index) {
+        if (index < savedLine) {
+            return false;
+        }
+        line = index;
+        records = 0;
+        skipped = index == savedLine ? savedRecords : 0;
+        return true;
+    }
+
+    /**
+     * Whether the next record was written before the checkpoint and will be discarded.
+     */
+    @Override
+    public boolean skipsNext() {
+        return skipped > 0;
+    }
+
+    /**
+     * Ends the walk of the current input line.
+     */
+    void endLine() throws WalkerException {
+        if (skipped > 0) {
+            throw new WalkerException("Input changed since checkpoint: line " + (line + 1)
+                    + " has fewer files than before, can't resume");
+        }
+    }
+
+    @Override
+    public void write(final byte[] hash, final String file, final boolean tree) throws IOException {
+        records++;
+        lastPath = file;
+        if (skipped > 0) {
+            if (--skipped == 0 && !file.equals(savedPath)) {
+                throw new WalkerException("Input changed since checkpoint: expected " + savedPath
+                        + ", found " + file + ", can't resume");
+            }
+            return;
+        }
+        writer.write(hash, file, tree);
+        if (System.nanoTime() - nextSave >= 0) {
+            save();
+        }
+    }
+
+    private void save() throws IOException {
+        writer.sync();
+        final Path parent = file.toAbsolutePath().getParent();
+        final Path temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(temporary))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(line);
+                output.writeLong(records);
+                output.writeLong(channel.position());
+                output.writeUTF(lastPath);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        nextSave = System.nanoTime() + intervalNanos;
+    }
+
+    /**
+     * Deletes the checkpoint after the walk completed.
+     */
+    void complete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,265 @@
+package ru.ifmo.rain.laptev.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Finds groups of files with equal contents in stages, reading as few bytes as possible.
+ * Files are first grouped by size, then files with colliding sizes are grouped by the hash of their
+ * first and last bytes, and only files with colliding partial hashes are hashed completely.
+ * Files with equal hashes are compared byte by byte, so hash collisions are never reported;
+ * with SHA-256 collisions are not expected and the comparison is skipped.
+ * Groups are written as consecutive lines with the same full hash, each group is followed by an empty line.
+ *
+ * <p>A file reached from several roots or through hard links is one candidate, keyed by its file key.
+ * Paths that can't be read are reported to {@code System.err} and are not written.
+ */
+class DuplicateFinder {
+    private static final int BUFF_SIZE = 1 << 16;
+    private static final int MAX_OPEN_FILES = 64;
+
+    private final FileHasher fileHasher;
+    private final long partialLength;
+    private final ForkJoinPool pool;
+    private final Map<Long, List<Candidate>> bySize = new LinkedHashMap<>();
+    private final Set<Object> seen = new HashSet<>();
+
+    DuplicateFinder(final FileHasher fileHasher, final long partialLength, final ForkJoinPool pool) {
+        this.fileHasher = fileHasher;
+        this.partialLength = partialLength;
+        this.pool = pool;
+    }
+
+    void add(final Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && attributes.size() > 0 && seen.add(key(file, attributes))) {
+                    bySize.computeIfAbsent(attributes.size(), size -> new ArrayList<>())
+                            .add(new Candidate(file, attributes.size()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(final Path file, final IOException exception) {
+                failed(file.toString(), exception.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Reports a root that is not a valid path.
+     */
+    void invalidRoot(final String root) {
+        failed(root, "invalid path");
+    }
+
+    private static void failed(final String path, final String reason) {
+        System.err.println("Can't read " + path + ": " + reason);
+    }
+
+    private static Object key(final Path file, final BasicFileAttributes attributes) {
+        final Object fileKey = attributes.fileKey();
+        return fileKey != null ? fileKey : file.toAbsolutePath().normalize();
+    }
+
+    void write(final HashWriter writer) throws IOException {
+        final List<List<Candidate>> sameSizes = new ArrayList<>();
+        final List<Candidate> partialCandidates = new ArrayList<>();
+        for (List<Candidate> sameSize : bySize.values()) {
+            if (sameSize.size() > 1) {
+                sameSizes.add(sameSize);
+                partialCandidates.addAll(sameSize);
+            }
+        }
+        bySize.clear();
+        seen.clear();
+        forEach(partialCandidates, candidate -> candidate.hash(true));
+
+        final List<List<Candidate>> samePartials = new ArrayList<>();
+        final List<Candidate> fullCandidates = new ArrayList<>();
+        final List<List<Candidate>> duplicates = new ArrayList<>();
+        for (List<Candidate> sameSize : sameSizes) {
+            for (List<Candidate> samePartial : group(sameSize)) {
+                if (samePartial.get(0).size > 2 * partialLength) {
+                    samePartials.add(samePartial);
+                    fullCandidates.addAll(samePartial);
+                } else {
+                    duplicates.add(samePartial);
+                }
+            }
+        }
+        forEach(fullCandidates, candidate -> candidate.hash(false));
+        for (List<Candidate> samePartial : samePartials) {
+            duplicates.addAll(group(samePartial));
+        }
+
+        final List<List<List<Candidate>>> confirmed = new ArrayList<>(Collections.nCopies(duplicates.size(), null));
+        final List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < duplicates.size(); i++) {
+            indices.add(i);
+        }
+        final boolean collisionFree = fileHasher.getAlgorithm() == HashAlgorithm.SHA_256;
+        forEach(indices, i -> confirmed.set(i, collisionFree ? List.of(duplicates.get(i)) : confirm(duplicates.get(i))));
+        for (List<List<Candidate>> groups : confirmed) {
+            for (List<Candidate> group : groups) {
+                for (Candidate candidate : group) {
+                    writer.write(candidate.digest, candidate.path.toString(), candidate.tree);
+                }
+                writer.endGroup();
+            }
+        }
+    }
+
+    private <T> void forEach(final List<T> items, final Consumer<T> action) {
+        if (pool == null) {
+            items.forEach(action);
+        } else {
+            pool.submit(() -> items.parallelStream().forEach(action)).join();
+        }
+    }
+
+    // Candidates whose hashing failed are dropped, groups of single file are not duplicates
+    private static List<List<Candidate>> group(final List<Candidate> candidates) {
+        final Map<ByteBuffer, List<Candidate>> groups = new LinkedHashMap<>();
+        for (Candidate candidate : candidates) {
+            if (candidate.digest != null) {
+                groups.computeIfAbsent(ByteBuffer.wrap(candidate.digest), digest -> new ArrayList<>()).add(candidate);
+            }
+        }
+        final List<List<Candidate>> result = new ArrayList<>();
+        for (List<Candidate> group : groups.values()) {
+            if (group.size() > 1) {
+                result.add(group);
+            }
+        }
+        return result;
+    }
+
+    // Splits files with equal hashes into groups of equal contents, unreadable files are reported and dropped.
+    // Candidates are streamed together with the group head, so a file equal to the head is read once
+    private static List<List<Candidate>> confirm(final List<Candidate> candidates) {
+        final List<List<Candidate>> groups = new ArrayList<>();
+        final ByteBuffer headBuffer = ByteBuffer.allocate(BUFF_SIZE);
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFF_SIZE);
+        List<Candidate> rest = candidates;
+        while (rest.size() > 1) {
+            final Candidate head = rest.get(0);
+            final List<Candidate> group = new ArrayList<>(List.of(head));
+            final List<Candidate> different = new ArrayList<>();
+            for (int from = 1; from < rest.size(); from += MAX_OPEN_FILES - 1) {
+                final List<Candidate> others = rest.subList(from, Math.min(rest.size(), from + MAX_OPEN_FILES - 1));
+                if (!compare(head, others, group, different, headBuffer, buffer)) {
+                    group.remove(head);
+                    different.addAll(group);
+                    different.addAll(rest.subList(from + others.size(), rest.size()));
+                    group.clear();
+                    break;
+                }
+            }
+            if (group.size() > 1) {
+                groups.add(group);
+            }
+            rest = different;
+        }
+        return groups;
+    }
+
+    // Moves the others equal to the head to same and the rest to different, returns false if the head can't be read
+    private static boolean compare(final Candidate head, final List<Candidate> others,
+                                   final List<Candidate> same, final List<Candidate> different,
+                                   final ByteBuffer headBuffer, final ByteBuffer buffer) {
+        final List<Candidate> matching = new ArrayList<>();
+        final List<FileChannel> channels = new ArrayList<>();
+        try (FileChannel headChannel = FileChannel.open(head.path, StandardOpenOption.READ)) {
+            for (Candidate other : others) {
+                try {
+                    channels.add(FileChannel.open(other.path, StandardOpenOption.READ));
+                    matching.add(other);
+                } catch (IOException e) {
+                    failed(other.path.toString(), e.getMessage());
+                }
+            }
+            boolean ended = false;
+            while (!ended && !matching.isEmpty()) {
+                headBuffer.clear();
+                ended = fill(headChannel, headBuffer);
+                headBuffer.flip();
+                for (int i = 0; i < matching.size(); ) {
+                    buffer.clear();
+                    try {
+                        if (fill(channels.get(i), buffer) == ended && buffer.flip().equals(headBuffer)) {
+                            i++;
+                            continue;
+                        }
+                        different.add(matching.get(i));
+                    } catch (IOException e) {
+                        failed(matching.get(i).path.toString(), e.getMessage());
+                    }
+                    matching.remove(i);
+                    close(channels.remove(i));
+                }
+            }
+            same.addAll(matching);
+            return true;
+        } catch (IOException e) {
+            failed(head.path.toString(), e.getMessage());
+            different.addAll(matching);
+            return false;
+        } finally {
+            channels.forEach(DuplicateFinder::close);
+        }
+    }
+
+    private static void close(final FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Reads until the buffer is full, returns whether the channel has ended
+    private static boolean fill(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private class Candidate {
+        private final Path path;
+        private final long size;
+        private byte[] digest;
+        private boolean tree;
+
+        private Candidate(final Path path, final long size) {
+            this.path = path;
+            this.size = size;
+        }
+
+        private void hash(final boolean partial) {
+            final byte[] result = new byte[fileHasher.getAlgorithm().getLength()];
+            try {
+                if (partial) {
+                    fileHasher.hashEnds(path, partialLength, result);
+                } else {
+                    tree = fileHasher.hash(path, result);
+                }
+                digest = result;
+            } catch (IOException e) {
+                failed(path.toString(), e.getMessage());
+                digest = null;
+            }
+        }
+    }
+}
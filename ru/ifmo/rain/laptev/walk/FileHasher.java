@@ -0,0 +1,222 @@
+package ru.ifmo.rain.laptev.walk;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Hashes files through {@link FileChannel} with the configured {@link HashAlgorithm}.
+ * Files smaller than the mapping threshold are read into a direct buffer reused by each thread,
+ * larger files are hashed through {@link MappedByteBuffer} windows.
+ * Hash states are reused by each thread as well, so hashing allocates nothing per file.
+ *
+ * <p>In tree mode files longer than one chunk are split into chunks that are hashed in parallel
+ * and combined as a Merkle tree in RFC 6962 order: a leaf is {@code H(0x00 || chunk)}, a node over
+ * {@code n} chunks is {@code H(0x01 || left || right)} where the left subtree holds the largest power of two
+ * chunks less than {@code n}. Such digests differ from plain ones and are reported as tree hashes.
+ */
+class FileHasher {
+    static final long DEFAULT_MAPPING_THRESHOLD = 64L << 20;
+    private static final int BUFF_SIZE = 64 << 10;
+    private static final long MAPPING_WINDOW_SIZE = 64L << 20;
+    private static final byte[] LEAF_PREFIX = {0};
+    private static final byte[] NODE_PREFIX = {1};
+
+    private final HashAlgorithm algorithm;
+    private final long mappingThreshold;
+    private final long treeChunkSize;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFF_SIZE));
+    private final ThreadLocal<HashState> states;
+    private final ThreadLocal<int[]> treeTaskDepth = ThreadLocal.withInitial(() -> new int[1]);
+
+    FileHasher(final HashAlgorithm algorithm, final long mappingThreshold) {
+        this(algorithm, mappingThreshold, 0, null);
+    }
+
+    /**
+     * @param treeChunkSize chunk size of tree mode, zero to disable it
+     * @param pool pool for hashing chunks in parallel, chunks are hashed by the calling thread if {@code null}
+     */
+    FileHasher(final HashAlgorithm algorithm, final long mappingThreshold, final long treeChunkSize, final ForkJoinPool pool) {
+        this.algorithm = algorithm;
+        this.mappingThreshold = mappingThreshold;
+        this.treeChunkSize = treeChunkSize;
+        this.pool = pool;
+        this.states = ThreadLocal.withInitial(algorithm::newState);
+    }
+
+    long getTreeChunkSize() {
+        return treeChunkSize;
+    }
+
+    /**
+     * Whether the current thread is hashing a chunk, possibly stolen from a thread joining it,
+     * so it must not block waiting for another thread.
+     */
+    boolean inTreeTask() {
+        return treeTaskDepth.get()[0] > 0;
+    }
+
+    boolean isTreeHashed(final long size) {
+        return treeChunkSize > 0 && size > treeChunkSize;
+    }
+
+    HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return {@code true} if the digest is a tree hash
+     */
+    boolean hash(final Path file, final byte[] digest) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (isTreeHashed(size)) {
+                hashTree(channel, size, digest);
+                return true;
+            }
+            final HashState state = states.get();
+            state.reset();
+            if (size >= mappingThreshold) {
+                hashMapped(channel, size, state);
+            } else {
+                hashRead(channel, state);
+            }
+            state.digest(digest, 0);
+            return false;
+        }
+    }
+
+    /**
+     * Hashes only the first and the last {@code length} bytes of the file.
+     * Files not longer than {@code 2 * length} are hashed completely, giving the same digest as {@link #hash}.
+     */
+    void hashEnds(final Path file, final long length, final byte[] digest) throws IOException {
+        final HashState state = states.get();
+        state.reset();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size <= 2 * length) {
+                hashRange(channel, 0, size, state);
+            } else {
+                hashRange(channel, 0, length, state);
+                hashRange(channel, size - length, size, state);
+            }
+        }
+        state.digest(digest, 0);
+    }
+
+    private void hashRange(final FileChannel channel, long position, final long end, final HashState state) throws IOException {
+        final ByteBuffer buffer = buffers.get();
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+            buffer.flip();
+            state.update(buffer);
+        }
+    }
+
+    private void hashRead(final FileChannel channel, final HashState state) throws IOException {
+        final ByteBuffer buffer = buffers.get();
+        buffer.clear();
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            state.update(buffer);
+            buffer.clear();
+        }
+    }
+
+    private void hashMapped(final FileChannel channel, final long size, final HashState state) throws IOException {
+        for (long position = 0; position < size; position += MAPPING_WINDOW_SIZE) {
+            final long windowSize = Math.min(MAPPING_WINDOW_SIZE, size - position);
+            state.update(channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize));
+        }
+    }
+
+    private void hashTree(final FileChannel channel, final long size, final byte[] digest) throws IOException {
+        final TreeTask task = new TreeTask(channel, size, 0, (size + treeChunkSize - 1) / treeChunkSize);
+        final byte[] result;
+        try {
+            result = pool != null && !ForkJoinTask.inForkJoinPool() ? pool.invoke(task) : task.invoke();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        System.arraycopy(result, 0, digest, 0, result.length);
+    }
+
+    private class TreeTask extends RecursiveTask<byte[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long size;
+        private final long from;
+        private final long to;
+
+        private TreeTask(final FileChannel channel, final long size, final long from, final long to) {
+            this.channel = channel;
+            this.size = size;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected byte[] compute() {
+            final int[] depth = treeTaskDepth.get();
+            depth[0]++;
+            try {
+                return computeDigest();
+            } finally {
+                depth[0]--;
+            }
+        }
+
+        private byte[] computeDigest() {
+            final byte[] digest = new byte[algorithm.getLength()];
+            if (to - from == 1) {
+                final HashState state = states.get();
+                state.reset();
+                state.update(ByteBuffer.wrap(LEAF_PREFIX));
+                try {
+                    hashRange(channel, from * treeChunkSize, Math.min(to * treeChunkSize, size), state);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                state.digest(digest, 0);
+                return digest;
+            }
+            final long split = from + Long.highestOneBit(to - from - 1);
+            final TreeTask left = new TreeTask(channel, size, from, split);
+            final TreeTask right = new TreeTask(channel, size, split, to);
+            final byte[] leftDigest;
+            final byte[] rightDigest;
+            if (inForkJoinPool()) {
+                right.fork();
+                leftDigest = left.compute();
+                rightDigest = right.join();
+            } else {
+                leftDigest = left.compute();
+                rightDigest = right.compute();
+            }
+            final HashState state = states.get();
+            state.reset();
+            state.update(ByteBuffer.wrap(NODE_PREFIX));
+            state.update(ByteBuffer.wrap(leftDigest));
+            state.update(ByteBuffer.wrap(rightDigest));
+            state.digest(digest, 0);
+            return digest;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ru.ifmo.rain.laptev.walk;
+
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Hashes of files already seen during the walk by their {@link BasicFileAttributes#fileKey()},
+ * so hard links, bind-mounted copies and files reached from several roots are read only once.
+ * Every file with a key is remembered: a link count of one doesn't mean the file can't be reached again.
+ * A thread asking for a key being hashed by another thread waits for its result through
+ * {@link ForkJoinPool#managedBlock}, unless it is hashing a tree chunk the owner may be joining.
+ */
+class FileKeyHashes {
+    private final FileHasher fileHasher;
+    private final Map<Object, CompletableFuture<Result>> results = new ConcurrentHashMap<>();
+
+    FileKeyHashes(final FileHasher fileHasher) {
+        this.fileHasher = fileHasher;
+    }
+
+    /**
+     * Copies the hash of the file into {@code digest}, computing it with {@code hasher} on first request.
+     *
+     * @return {@code true} if the digest is a tree hash
+     */
+    boolean hash(final BasicFileAttributes attributes, final byte[] digest, final Hasher hasher) {
+        final Object fileKey = attributes.fileKey();
+        if (fileKey == null) {
+            return hasher.hash(digest);
+        }
+        final CompletableFuture<Result> created = new CompletableFuture<>();
+        final CompletableFuture<Result> existing = results.putIfAbsent(fileKey, created);
+        if (existing == null) {
+            final boolean tree;
+            try {
+                tree = hasher.hash(digest);
+            } catch (RuntimeException | Error e) {
+                created.completeExceptionally(e);
+                throw e;
+            }
+            created.complete(new Result(digest.clone(), tree));
+            return tree;
+        }
+        if (!existing.isDone() && fileHasher.inTreeTask() || !await(existing)) {
+            return hasher.hash(digest);
+        }
+        final Result result = existing.join();
+        System.arraycopy(result.digest, 0, digest, 0, digest.length);
+        return result.tree;
+    }
+
+    /**
+     * Completes with the hash of the file copied into {@code digest}, starting {@code hasher} on first request.
+     * A later request completes when the first one does; if the first one failed, it hashes with {@code fallback}.
+     *
+     * @return future result, {@code true} if the digest is a tree hash
+     */
+    CompletableFuture<Boolean> hashAsync(final BasicFileAttributes attributes, final byte[] digest,
+                                         final AsyncHasher hasher, final Hasher fallback) throws IOException {
+        final Object fileKey = attributes.fileKey();
+        if (fileKey == null) {
+            return hasher.hash(digest);
+        }
+        final CompletableFuture<Result> created = new CompletableFuture<>();
+        final CompletableFuture<Result> existing = results.putIfAbsent(fileKey, created);
+        if (existing == null) {
+            final CompletableFuture<Boolean> result;
+            try {
+                result = hasher.hash(digest);
+            } catch (IOException | RuntimeException | Error e) {
+                created.completeExceptionally(e);
+                throw e;
+            }
+            return result.whenComplete((tree, e) -> {
+                if (e == null) {
+                    created.complete(new Result(digest.clone(), tree));
+                } else {
+                    created.completeExceptionally(e);
+                }
+            });
+        }
+        return existing.handle((result, e) -> {
+            if (e != null) {
+                return fallback.hash(digest);
+            }
+            System.arraycopy(result.digest, 0, digest, 0, digest.length);
+            return result.tree;
+        });
+    }
+
+    // Returns whether the owner has computed the hash
+    private static boolean await(final CompletableFuture<Result> future) {
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    try {
+                        future.get();
+                    } catch (ExecutionException ignored) {
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return future.isDone();
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !future.isCompletedExceptionally();
+    }
+
+    @FunctionalInterface
+    interface Hasher {
+        boolean hash(byte[] digest);
+    }
+
+    @FunctionalInterface
+    interface AsyncHasher {
+        CompletableFuture<Boolean> hash(byte[] digest) throws IOException;
+    }
+
+    private static class Result {
+        private final byte[] digest;
+        private final boolean tree;
+
+        private Result(final byte[] digest, final boolean tree) {
+            this.digest = digest;
+            this.tree = tree;
+        }
+    }
+}
@@ -1,39 +1,152 @@
 package ru.ifmo.rain.laptev.walk;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.Writer;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 
 
 public class FileVisitorHash extends SimpleFileVisitor<Path> {
-    private static final int HASH_START_VALUE = 0x811c9dc5;
-    private static final int BUFF_SIZE = 1024;
-    private static final int HASH_PRIME = 0x01000193;
-    private final Writer writer;
+    private final HashWriter writer;
+    private final FileHasher fileHasher;
+    private final HashCache cache;
+    private final HashWatcher watcher;
+    private final FileKeyHashes fileKeyHashes;
+    private final WalkMetrics metrics;
+    private final byte[] digest;
+    private final byte[] zeroDigest;
 
-    FileVisitorHash(Writer writer) {
+    FileVisitorHash(HashWriter writer) {
+        this(writer, new FileHasher(HashAlgorithm.FNV1_32, FileHasher.DEFAULT_MAPPING_THRESHOLD), null, null, null, null);
+    }
+
+    FileVisitorHash(HashWriter writer, FileHasher fileHasher, HashCache cache, HashWatcher watcher,
+                    FileKeyHashes fileKeyHashes, WalkMetrics metrics) {
         this.writer = writer;
+        this.fileHasher = fileHasher;
+        this.cache = cache;
+        this.watcher = watcher;
+        this.fileKeyHashes = fileKeyHashes;
+        this.metrics = metrics;
+        this.digest = newDigest();
+        this.zeroDigest = newDigest();
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+        visitDirectory(dir);
+        return FileVisitResult.CONTINUE;
+    }
+
+    void visitDirectory(final Path dir) {
+        if (watcher != null) {
+            watcher.register(dir);
+        }
     }
 
     @Override
     public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
-        int hash = HASH_START_VALUE;
-        byte[] bytes = new byte[BUFF_SIZE];
-        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(file))) {
-            int countOfBytes;
-            while ((countOfBytes = inputStream.read(bytes)) >= 0) {
-                hash = hash(bytes, countOfBytes, hash);
-            }
-        } catch (IOException e) {
-            hash = 0;
+        if (writer.skipsNext()) {
+            writeHash(zeroDigest, file.toString(), false);
+            return FileVisitResult.CONTINUE;
         }
-        writeHash(hash, file.toString());
+        final boolean tree = hashFile(file, attributes, digest);
+        writeHash(digest, file.toString(), tree);
         return FileVisitResult.CONTINUE;
     }
 
+    byte[] newDigest() {
+        return new byte[fileHasher.getAlgorithm().getLength()];
+    }
+
+    /**
+     * @return {@code true} if the digest is a tree hash
+     */
+    boolean hashFile(final Path file, final BasicFileAttributes attributes, final byte[] digest) {
+        final Object fileKey = attributes.fileKey();
+        if (fileKeyHashes == null || fileKey == null || attributes.isSymbolicLink()) {
+            return hashFileContents(file, attributes, digest);
+        }
+        final boolean[] hashed = new boolean[1];
+        final boolean tree = fileKeyHashes.hash(attributes, digest, result -> {
+            hashed[0] = true;
+            return hashFileContents(file, attributes, result);
+        });
+        if (!hashed[0] && cache != null) {
+            cache.put(file, attributes, digest);
+        }
+        return tree;
+    }
+
+    /**
+     * Like {@link #hashFile}, with the contents hashed by {@code hasher}, which may complete later.
+     */
+    CompletableFuture<Boolean> hashFileAsync(final Path file, final BasicFileAttributes attributes, final byte[] digest,
+                                             final FileKeyHashes.AsyncHasher hasher) throws IOException {
+        if (fileKeyHashes == null || attributes.isSymbolicLink()) {
+            return hasher.hash(digest);
+        }
+        final boolean[] hashed = new boolean[1];
+        final CompletableFuture<Boolean> result = fileKeyHashes.hashAsync(attributes, digest, owned -> {
+            hashed[0] = true;
+            return hasher.hash(owned);
+        }, fallback -> hashFileContents(file, attributes, fallback));
+        if (hashed[0] || cache == null) {
+            return result;
+        }
+        return result.thenApply(tree -> {
+            cache.put(file, attributes, digest);
+            return tree;
+        });
+    }
+
+    private boolean hashFileContents(final Path file, final BasicFileAttributes attributes, final byte[] digest) {
+        if (getCached(file, attributes, digest)) {
+            return fileHasher.isTreeHashed(attributes.size());
+        }
+        final boolean tree;
+        final long start = System.nanoTime();
+        try {
+            tree = fileHasher.hash(file, digest);
+        } catch (IOException e) {
+            hashFailed(digest);
+            return false;
+        }
+        hashed(file, attributes, digest, System.nanoTime() - start);
+        return tree;
+    }
+
+    /**
+     * Copies the cached hash of an unchanged file into {@code digest}.
+     */
+    boolean getCached(final Path file, final BasicFileAttributes attributes, final byte[] digest) {
+        if (cache != null && cache.get(file, attributes, digest)) {
+            cache.put(file, attributes, digest);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records the hash of the file computed in given time.
+     */
+    void hashed(final Path file, final BasicFileAttributes attributes, final byte[] digest, final long nanos) {
+        if (metrics != null) {
+            metrics.fileHashed(attributes.size(), nanos);
+        }
+        if (cache != null) {
+            cache.put(file, attributes, digest);
+        }
+    }
+
+    void hashFailed(final byte[] digest) {
+        if (metrics != null) {
+            metrics.failure();
+        }
+        Arrays.fill(digest, (byte) 0);
+    }
+
     @Override
     public FileVisitResult visitFileFailed(Path file, IOException exception) throws IOException {
         processException(file.toString());
@@ -41,19 +154,16 @@ public class FileVisitorHash extends SimpleFileVisitor<Path> {
     }
 
     void processException(final String file) throws IOException {
-        writeHash(0, file);
-    }
-
-    private void writeHash(final int hash, final String file) throws IOException {
-        String hexHash = String.format("%08x", hash);
-        writer.write(hexHash + " " + file + System.lineSeparator());
+        if (metrics != null) {
+            metrics.failure();
+        }
+        writeHash(zeroDigest, file, false);
     }
 
-    private int hash(final byte[] bytes, final int size, int hash) {
-        for (int i = 0; i < size; i++) {
-            hash = (hash * HASH_PRIME) ^ (bytes[i] & 0xff);
+    void writeHash(final byte[] hash, final String file, final boolean tree) throws IOException {
+        if (metrics != null) {
+            metrics.fileVisited();
         }
-        return hash;
+        writer.write(hash, file, tree);
     }
 }
-
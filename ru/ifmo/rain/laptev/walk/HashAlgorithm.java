@@ -0,0 +1,289 @@
+package ru.ifmo.rain.laptev.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+enum HashAlgorithm {
+    FNV1_32("fnv1-32", 1, 4) {
+        @Override
+        HashState newState() {
+            return new Fnv132State();
+        }
+    },
+    FNV1A_64("fnv1a-64", 2, 8) {
+        @Override
+        HashState newState() {
+            return new Fnv1a64State();
+        }
+    },
+    XXHASH_64("xxhash64", 3, 8) {
+        @Override
+        HashState newState() {
+            return new XxHash64State();
+        }
+    },
+    SHA_256("sha-256", 4, 32) {
+        @Override
+        HashState newState() {
+            return new MessageDigestState("SHA-256");
+        }
+    };
+
+    private final String name;
+    private final int id;
+    private final int length;
+
+    HashAlgorithm(final String name, final int id, final int length) {
+        this.name = name;
+        this.id = id;
+        this.length = length;
+    }
+
+    abstract HashState newState();
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Identifier stored in cache and manifest files, never reused for another algorithm.
+     */
+    int getId() {
+        return id;
+    }
+
+    /**
+     * Digest length in bytes.
+     */
+    int getLength() {
+        return length;
+    }
+
+    static HashAlgorithm forName(final String name) {
+        for (HashAlgorithm algorithm : values()) {
+            if (algorithm.name.equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
+    static HashAlgorithm forId(final int id) {
+        for (HashAlgorithm algorithm : values()) {
+            if (algorithm.id == id) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
+    private static void putLong(final byte[] digest, final int offset, final long value, final int length) {
+        for (int i = 0; i < length; i++) {
+            digest[offset + i] = (byte) (value >>> (8 * (length - 1 - i)));
+        }
+    }
+
+    private static class Fnv132State implements HashState {
+        private static final int HASH_START_VALUE = 0x811c9dc5;
+        private static final int HASH_PRIME = 0x01000193;
+        private int hash;
+
+        @Override
+        public void reset() {
+            hash = HASH_START_VALUE;
+        }
+
+        @Override
+        public void update(final ByteBuffer buffer) {
+            int hash = this.hash;
+            for (int i = buffer.position(); i < buffer.limit(); i++) {
+                hash = (hash * HASH_PRIME) ^ (buffer.get(i) & 0xff);
+            }
+            this.hash = hash;
+            buffer.position(buffer.limit());
+        }
+
+        @Override
+        public void digest(final byte[] digest, final int offset) {
+            putLong(digest, offset, hash, 4);
+        }
+    }
+
+    private static class Fnv1a64State implements HashState {
+        private static final long HASH_START_VALUE = 0xcbf29ce484222325L;
+        private static final long HASH_PRIME = 0x100000001b3L;
+        private long hash;
+
+        @Override
+        public void reset() {
+            hash = HASH_START_VALUE;
+        }
+
+        @Override
+        public void update(final ByteBuffer buffer) {
+            long hash = this.hash;
+            for (int i = buffer.position(); i < buffer.limit(); i++) {
+                hash = (hash ^ (buffer.get(i) & 0xff)) * HASH_PRIME;
+            }
+            this.hash = hash;
+            buffer.position(buffer.limit());
+        }
+
+        @Override
+        public void digest(final byte[] digest, final int offset) {
+            putLong(digest, offset, hash, 8);
+        }
+    }
+
+    /**
+     * XXH64 with zero seed. Input is consumed in 32-byte stripes, a partial stripe is kept between updates.
+     */
+    private static class XxHash64State implements HashState {
+        private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+        private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long PRIME_3 = 0x165667B19E3779F9L;
+        private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+        private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+        private static final int STRIPE_SIZE = 32;
+
+        private final ByteBuffer stripe = ByteBuffer.allocate(STRIPE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long v1;
+        private long v2;
+        private long v3;
+        private long v4;
+        private long total;
+
+        @Override
+        public void reset() {
+            v1 = PRIME_1 + PRIME_2;
+            v2 = PRIME_2;
+            v3 = 0;
+            v4 = -PRIME_1;
+            total = 0;
+            stripe.clear();
+        }
+
+        @Override
+        public void update(final ByteBuffer buffer) {
+            final ByteOrder order = buffer.order();
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            total += buffer.remaining();
+            if (stripe.position() > 0) {
+                while (stripe.hasRemaining() && buffer.hasRemaining()) {
+                    stripe.put(buffer.get());
+                }
+                if (stripe.hasRemaining()) {
+                    buffer.order(order);
+                    return;
+                }
+                stripe.flip();
+                consumeStripes(stripe);
+                stripe.clear();
+            }
+            consumeStripes(buffer);
+            stripe.put(buffer);
+            buffer.order(order);
+        }
+
+        private void consumeStripes(final ByteBuffer buffer) {
+            long v1 = this.v1;
+            long v2 = this.v2;
+            long v3 = this.v3;
+            long v4 = this.v4;
+            int position = buffer.position();
+            final int limit = buffer.limit() - STRIPE_SIZE;
+            for (; position <= limit; position += STRIPE_SIZE) {
+                v1 = round(v1, buffer.getLong(position));
+                v2 = round(v2, buffer.getLong(position + 8));
+                v3 = round(v3, buffer.getLong(position + 16));
+                v4 = round(v4, buffer.getLong(position + 24));
+            }
+            buffer.position(position);
+            this.v1 = v1;
+            this.v2 = v2;
+            this.v3 = v3;
+            this.v4 = v4;
+        }
+
+        @Override
+        public void digest(final byte[] digest, final int offset) {
+            long hash;
+            if (total >= STRIPE_SIZE) {
+                hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+                        + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                hash = mergeRound(hash, v1);
+                hash = mergeRound(hash, v2);
+                hash = mergeRound(hash, v3);
+                hash = mergeRound(hash, v4);
+            } else {
+                hash = PRIME_5;
+            }
+            hash += total;
+
+            final int length = stripe.position();
+            int position = 0;
+            for (; position + 8 <= length; position += 8) {
+                hash ^= round(0, stripe.getLong(position));
+                hash = Long.rotateLeft(hash, 27) * PRIME_1 + PRIME_4;
+            }
+            if (position + 4 <= length) {
+                hash ^= (stripe.getInt(position) & 0xffffffffL) * PRIME_1;
+                hash = Long.rotateLeft(hash, 23) * PRIME_2 + PRIME_3;
+                position += 4;
+            }
+            for (; position < length; position++) {
+                hash ^= (stripe.get(position) & 0xff) * PRIME_5;
+                hash = Long.rotateLeft(hash, 11) * PRIME_1;
+            }
+
+            hash ^= hash >>> 33;
+            hash *= PRIME_2;
+            hash ^= hash >>> 29;
+            hash *= PRIME_3;
+            hash ^= hash >>> 32;
+            putLong(digest, offset, hash, 8);
+        }
+
+        private static long round(final long accumulator, final long input) {
+            return Long.rotateLeft(accumulator + input * PRIME_2, 31) * PRIME_1;
+        }
+
+        private static long mergeRound(final long accumulator, final long value) {
+            return (accumulator ^ round(0, value)) * PRIME_1 + PRIME_4;
+        }
+    }
+
+    private static class MessageDigestState implements HashState {
+        private final MessageDigest messageDigest;
+
+        private MessageDigestState(final String algorithm) {
+            try {
+                messageDigest = MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Message digest " + algorithm + " is not available", e);
+            }
+        }
+
+        @Override
+        public void reset() {
+            messageDigest.reset();
+        }
+
+        @Override
+        public void update(final ByteBuffer buffer) {
+            messageDigest.update(buffer);
+        }
+
+        @Override
+        public void digest(final byte[] digest, final int offset) {
+            try {
+                messageDigest.digest(digest, offset, messageDigest.getDigestLength());
+            } catch (DigestException e) {
+                throw new IllegalArgumentException("Digest doesn't fit into the array", e);
+            }
+        }
+    }
+}
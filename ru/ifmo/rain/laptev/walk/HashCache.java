@@ -0,0 +1,237 @@
+package ru.ifmo.rain.laptev.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sidecar cache of file hashes from a previous walk.
+ * Entries are keyed by path, file key, size and modification time, so unchanged files are not reopened.
+ * The previous cache is memory-mapped and searched in place, entries seen during the current walk
+ * are collected in memory and written sorted by {@link #save()}.
+ *
+ * <p>File layout: {@code int} magic, {@code int} version, {@code int} algorithm id, {@code int} digest length,
+ * {@code long} tree chunk size, {@code long} entry count, then entries of {@code long} path hash, {@code long} file key hash, {@code long} size,
+ * {@code long} modification time and the digest, sorted by path hash.
+ * A cache written with another algorithm or tree chunk size is ignored.
+ */
+class HashCache {
+    private static final int MAGIC = 0x57414c4b;
+    private static final int VERSION = 4;
+    private static final int HEADER_SIZE = 32;
+    private static final int KEY_SIZE = 32;
+    private static final int FIELDS = 4;
+    private static final long FNV64_START_VALUE = 0xcbf29ce484222325L;
+    private static final long FNV64_PRIME = 0x100000001b3L;
+
+    private final Path file;
+    private final HashAlgorithm algorithm;
+    private final long treeChunkSize;
+    private final int digestLength;
+    private final int entrySize;
+    private final int entriesPerRegion;
+    private final MappedByteBuffer[] regions;
+    private final long count;
+    private long[] entries = new long[FIELDS * 1024];
+    private byte[] digests;
+    private int size;
+
+    private HashCache(final Path file, final HashAlgorithm algorithm, final long treeChunkSize,
+                      final MappedByteBuffer[] regions, final long count) {
+        this.file = file;
+        this.algorithm = algorithm;
+        this.treeChunkSize = treeChunkSize;
+        this.digestLength = algorithm.getLength();
+        this.entrySize = KEY_SIZE + digestLength;
+        this.entriesPerRegion = Integer.MAX_VALUE / entrySize;
+        this.regions = regions;
+        this.count = count;
+        this.digests = new byte[digestLength * 1024];
+    }
+
+    static HashCache open(final Path file, final HashAlgorithm algorithm, final long treeChunkSize) throws IOException {
+        final HashCache empty = new HashCache(file, algorithm, treeChunkSize, new MappedByteBuffer[0], 0);
+        if (!Files.isRegularFile(file)) {
+            return empty;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                return empty;
+            }
+            final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            final long count = header.getLong(24);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || header.getInt(8) != algorithm.getId() || header.getInt(12) != algorithm.getLength()
+                    || header.getLong(16) != treeChunkSize || count < 0 || count > (fileSize - HEADER_SIZE) / empty.entrySize) {
+                return empty;
+            }
+            final int perRegion = empty.entriesPerRegion;
+            final MappedByteBuffer[] regions = new MappedByteBuffer[(int) ((count + perRegion - 1) / perRegion)];
+            for (int i = 0; i < regions.length; i++) {
+                final long first = (long) i * perRegion;
+                final long entriesInRegion = Math.min(perRegion, count - first);
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + first * empty.entrySize, entriesInRegion * empty.entrySize);
+            }
+            return new HashCache(file, algorithm, treeChunkSize, regions, count);
+        }
+    }
+
+    /**
+     * Copies stored hash into {@code digest} if the file is cached and unchanged.
+     */
+    boolean get(final Path path, final BasicFileAttributes attributes, final byte[] digest) {
+        if (attributes.isSymbolicLink()) {
+            return false;
+        }
+        final long pathHash = hash(path.toString());
+        long left = 0;
+        long right = count - 1;
+        while (left <= right) {
+            final long middle = (left + right) >>> 1;
+            final ByteBuffer region = regions[(int) (middle / entriesPerRegion)];
+            final int offset = (int) (middle % entriesPerRegion) * entrySize;
+            final int compared = Long.compare(region.getLong(offset), pathHash);
+            if (compared < 0) {
+                left = middle + 1;
+            } else if (compared > 0) {
+                right = middle - 1;
+            } else {
+                if (region.getLong(offset + 8) == fileKeyHash(attributes)
+                        && region.getLong(offset + 16) == attributes.size()
+                        && region.getLong(offset + 24) == modificationTime(attributes)) {
+                    for (int i = 0; i < digestLength; i++) {
+                        digest[i] = region.get(offset + KEY_SIZE + i);
+                    }
+                    return true;
+                }
+                return false;
+            }
+        }
+        return false;
+    }
+
+    void put(final Path path, final BasicFileAttributes attributes, final byte[] digest) {
+        if (attributes.isSymbolicLink()) {
+            return;
+        }
+        final long pathHash = hash(path.toString());
+        final long fileKeyHash = fileKeyHash(attributes);
+        synchronized (this) {
+            if (size * FIELDS == entries.length) {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+                digests = Arrays.copyOf(digests, digests.length * 2);
+            }
+            final int offset = size * FIELDS;
+            entries[offset] = pathHash;
+            entries[offset + 1] = fileKeyHash;
+            entries[offset + 2] = attributes.size();
+            entries[offset + 3] = modificationTime(attributes);
+            System.arraycopy(digest, 0, digests, size * digestLength, digestLength);
+            size++;
+        }
+    }
+
+    synchronized void save() throws IOException {
+        sort(0, size - 1);
+        final Path parent = file.toAbsolutePath().getParent();
+        final Path temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                final ByteBuffer buffer = ByteBuffer.allocateDirect(entrySize * 4096);
+                buffer.putInt(MAGIC).putInt(VERSION).putInt(algorithm.getId()).putInt(digestLength)
+                        .putLong(treeChunkSize).putLong(0);
+                long written = 0;
+                for (int i = 0; i < size; i++) {
+                    final int offset = i * FIELDS;
+                    if (i + 1 < size && entries[offset] == entries[offset + FIELDS]) {
+                        continue;
+                    }
+                    if (buffer.remaining() < entrySize) {
+                        flush(channel, buffer);
+                    }
+                    buffer.putLong(entries[offset]).putLong(entries[offset + 1]).putLong(entries[offset + 2])
+                            .putLong(entries[offset + 3]).put(digests, i * digestLength, digestLength);
+                    written++;
+                }
+                flush(channel, buffer);
+                buffer.putLong(written).flip();
+                channel.write(buffer, 24);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void flush(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Stable order is not needed: equal path hashes only come from the same path visited twice
+    private void sort(int left, int right) {
+        while (left < right) {
+            final long pivot = entries[((left + right) >>> 1) * FIELDS];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (entries[i * FIELDS] < pivot) {
+                    i++;
+                }
+                while (entries[j * FIELDS] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (j - left < right - i) {
+                sort(left, j);
+                left = i;
+            } else {
+                sort(i, right);
+                right = j;
+            }
+        }
+    }
+
+    private void swap(final int first, final int second) {
+        for (int k = 0; k < FIELDS; k++) {
+            final long value = entries[first * FIELDS + k];
+            entries[first * FIELDS + k] = entries[second * FIELDS + k];
+            entries[second * FIELDS + k] = value;
+        }
+        for (int k = 0; k < digestLength; k++) {
+            final byte value = digests[first * digestLength + k];
+            digests[first * digestLength + k] = digests[second * digestLength + k];
+            digests[second * digestLength + k] = value;
+        }
+    }
+
+    private static long fileKeyHash(final BasicFileAttributes attributes) {
+        final Object fileKey = attributes.fileKey();
+        return fileKey == null ? 0 : hash(fileKey.toString());
+    }
+
+    private static long modificationTime(final BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    private static long hash(final String string) {
+        long hash = FNV64_START_VALUE;
+        for (int i = 0; i < string.length(); i++) {
+            hash = (hash ^ string.charAt(i)) * FNV64_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.ifmo.rain.laptev.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming hash computation, reused by one thread for many files.
+ */
+interface HashState {
+    void reset();
+
+    /**
+     * Hashes remaining bytes of the buffer and moves its position to the limit.
+     */
+    void update(ByteBuffer buffer);
+
+    /**
+     * Writes the digest of all bytes passed since the last {@link #reset()} in big-endian order.
+     */
+    void digest(byte[] digest, int offset);
+}
@@ -0,0 +1,283 @@
+package ru.ifmo.rain.laptev.walk;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the output manifest up to date after the initial walk.
+ * Directories are registered with a {@link WatchService} as the walk visits them, so no change is missed
+ * between the walk and the watch. Events are coalesced per path and handled once the path has been quiet
+ * for the debounce interval, then the whole manifest is rewritten to a temporary file and atomically
+ * renamed over the output file. The output file and its temporary siblings are never hashed,
+ * so rewriting them does not trigger another rewrite.
+ */
+class HashWatcher {
+    static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+
+    private final Path manifestFile;
+    private final Path absoluteManifestFile;
+    private final FileHasher fileHasher;
+    private final long debounceNanos;
+    private final WatchService watchService;
+    private final Set<Path> directories = ConcurrentHashMap.newKeySet();
+    private final Map<Path, Map<Path, Path>> fileRoots = new HashMap<>();
+    private final Map<String, ManifestEntry> manifest = new LinkedHashMap<>();
+    private final Map<Path, Long> pending = new LinkedHashMap<>();
+
+    HashWatcher(final Path manifestFile, final FileHasher fileHasher, final long debounceMillis) throws IOException {
+        this.manifestFile = manifestFile;
+        this.absoluteManifestFile = manifestFile.toAbsolutePath().normalize();
+        this.fileHasher = fileHasher;
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+        this.watchService = manifestFile.getFileSystem().newWatchService();
+    }
+
+    /**
+     * Returns writer recording every written hash into the manifest before passing it to {@code writer}.
+     */
+    HashWriter record(final HashWriter writer) {
+        return new HashWriter() {
+            @Override
+            public void write(final byte[] hash, final String file, final boolean tree) throws IOException {
+                if (isManifestFile(Paths.get(file))) {
+                    return;
+                }
+                manifest.put(file, new ManifestEntry(hash.clone(), tree));
+                writer.write(hash, file, tree);
+            }
+
+            @Override
+            public void endGroup() throws IOException {
+                writer.endGroup();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    /**
+     * Watches a walk root that is not a directory through its parent directory.
+     */
+    void watchRoot(final Path root) {
+        if (Files.isDirectory(root, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        final Path parent = root.toAbsolutePath().getParent();
+        if (parent == null || !Files.isDirectory(parent)) {
+            return;
+        }
+        try {
+            final WatchKey key = parent.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            final Path watched = (Path) key.watchable();
+            fileRoots.computeIfAbsent(watched, p -> new HashMap<>()).put(watched.resolve(root.getFileName()), root);
+        } catch (IOException e) {
+            System.err.println("Can't watch " + root + ": " + e.getMessage());
+        }
+    }
+
+    void register(final Path directory) {
+        try {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            directories.add(directory);
+        } catch (IOException e) {
+            System.err.println("Can't watch directory " + directory + ": " + e.getMessage());
+        }
+    }
+
+    void watch() throws IOException {
+        try {
+            while (!Thread.interrupted()) {
+                final WatchKey key = pending.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(nextDeadline() - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (key != null) {
+                    handleEvents(key);
+                }
+                if (processReady()) {
+                    writeManifest();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+        } finally {
+            watchService.close();
+        }
+    }
+
+    private long nextDeadline() {
+        long deadline = Long.MAX_VALUE;
+        for (long time : pending.values()) {
+            deadline = Math.min(deadline, time + debounceNanos);
+        }
+        return deadline;
+    }
+
+    private void handleEvents(final WatchKey key) {
+        final Path directory = (Path) key.watchable();
+        final boolean walked = directories.contains(directory);
+        final Map<Path, Path> roots = fileRoots.getOrDefault(directory, Collections.emptyMap());
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                if (walked) {
+                    registerTree(directory);
+                }
+                roots.values().forEach(this::schedule);
+                continue;
+            }
+            final Path path = directory.resolve((Path) event.context());
+            if (walked) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                        && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    registerTree(path);
+                } else {
+                    schedule(path);
+                }
+            } else if (roots.containsKey(path)) {
+                schedule(roots.get(path));
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(directory);
+        }
+    }
+
+    private void schedule(final Path path) {
+        if (isManifestFile(path)) {
+            return;
+        }
+        pending.remove(path);
+        pending.put(path, System.nanoTime());
+    }
+
+    // Files created before the registration produce no events, so the whole new subtree is scheduled
+    private void registerTree(final Path directory) {
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attributes) {
+                    if (!directories.contains(dir)) {
+                        register(dir);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+                    schedule(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path file, final IOException exception) {
+                    schedule(file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            schedule(directory);
+        }
+    }
+
+    // Temporary files are created by writeManifest as the output file name, random digits and ".tmp"
+    private boolean isManifestFile(final Path path) {
+        final Path absolute = path.toAbsolutePath().normalize();
+        if (absolute.equals(absoluteManifestFile)) {
+            return true;
+        }
+        final Path name = absolute.getFileName();
+        if (name == null || !Objects.equals(absolute.getParent(), absoluteManifestFile.getParent())) {
+            return false;
+        }
+        final String fileName = name.toString();
+        return fileName.startsWith(absoluteManifestFile.getFileName().toString()) && fileName.endsWith(".tmp");
+    }
+
+    private boolean processReady() {
+        final long now = System.nanoTime();
+        boolean changed = false;
+        final Iterator<Map.Entry<Path, Long>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Path, Long> entry = iterator.next();
+            if (now - entry.getValue() < debounceNanos) {
+                continue;
+            }
+            iterator.remove();
+            changed |= update(entry.getKey());
+        }
+        return changed;
+    }
+
+    private boolean update(final Path path) {
+        final String file = path.toString();
+        final byte[] digest = new byte[fileHasher.getAlgorithm().getLength()];
+        boolean tree = false;
+        try {
+            if (Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isDirectory()) {
+                return false;
+            }
+            tree = fileHasher.hash(path, digest);
+        } catch (NoSuchFileException e) {
+            return remove(file);
+        } catch (IOException e) {
+            Arrays.fill(digest, (byte) 0);
+        }
+        final ManifestEntry entry = new ManifestEntry(digest, tree);
+        return !entry.equals(manifest.put(file, entry));
+    }
+
+    private boolean remove(final String file) {
+        boolean changed = manifest.remove(file) != null;
+        final String prefix = file + manifestFile.getFileSystem().getSeparator();
+        changed |= manifest.keySet().removeIf(key -> key.startsWith(prefix));
+        return changed;
+    }
+
+    private void writeManifest() throws IOException {
+        final Path parent = absoluteManifestFile.getParent();
+        final Path temporary = Files.createTempFile(parent, manifestFile.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE);
+                 HashWriter writer = new AsyncHashWriter(channel, fileHasher.getAlgorithm().getLength())) {
+                for (Map.Entry<String, ManifestEntry> entry : manifest.entrySet()) {
+                    writer.write(entry.getValue().hash, entry.getKey(), entry.getValue().tree);
+                }
+            }
+            Files.move(temporary, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static class ManifestEntry {
+        private final byte[] hash;
+        private final boolean tree;
+
+        private ManifestEntry(final byte[] hash, final boolean tree) {
+            this.hash = hash;
+            this.tree = tree;
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            if (!(object instanceof ManifestEntry)) {
+                return false;
+            }
+            final ManifestEntry entry = (ManifestEntry) object;
+            return tree == entry.tree && Arrays.equals(hash, entry.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(hash) + Boolean.hashCode(tree);
+        }
+    }
+}
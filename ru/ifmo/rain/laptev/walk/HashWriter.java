@@ -0,0 +1,33 @@
+package ru.ifmo.rain.laptev.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination of walk results, records are written in visit order.
+ */
+interface HashWriter extends Closeable {
+    /**
+     * Writes hash of the file. The array may be reused by the caller after return.
+     *
+     * @param tree whether the hash is a chunked tree hash rather than a plain one
+     */
+    void write(byte[] hash, String file, boolean tree) throws IOException;
+
+    default void write(final byte[] hash, final String file) throws IOException {
+        write(hash, file, false);
+    }
+
+    /**
+     * Whether the next record will be discarded, so its hash need not be computed.
+     */
+    default boolean skipsNext() {
+        return false;
+    }
+
+    /**
+     * Ends a group of related records, such as files with equal contents.
+     */
+    default void endGroup() throws IOException {
+    }
+}
@@ -0,0 +1,236 @@
+package ru.ifmo.rain.laptev.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Memory-mapped binary manifest written by {@link ManifestWriter}.
+ * Entries are sorted by UTF-8 bytes of their paths and grouped into blocks; paths in a block are
+ * prefix-compressed against the previous one, the first path of a block is stored whole, so a path is found
+ * by binary search over the block index followed by a scan of one block.
+ *
+ * <p>File layout: {@code int} magic, {@code int} version, {@code int} algorithm id, {@code int} digest length,
+ * {@code long} entry count, {@code long} index offset, {@code int} entries per block, {@code int} longest block length,
+ * then blocks of entries and the index of {@code long} block offsets. An entry is the varint length of the prefix
+ * shared with the previous path, the varint length of the rest of the path, the rest of the path,
+ * a flags byte ({@code 1} for a tree hash) and the digest.
+ */
+class Manifest implements Closeable {
+    static final int MAGIC = 0x57414c4d;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 40;
+    static final int BLOCK_ENTRIES = 64;
+    static final int TREE_FLAG = 1;
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final HashAlgorithm algorithm;
+    private final long count;
+    private final long indexOffset;
+    private final int blockEntries;
+    private final long blocks;
+    private final MappedByteBuffer[] windows;
+
+    private Manifest(final FileChannel channel, final HashAlgorithm algorithm, final long count,
+                     final long indexOffset, final int blockEntries, final MappedByteBuffer[] windows) {
+        this.channel = channel;
+        this.algorithm = algorithm;
+        this.count = count;
+        this.indexOffset = indexOffset;
+        this.blockEntries = blockEntries;
+        this.blocks = (count + blockEntries - 1) / blockEntries;
+        this.windows = windows;
+    }
+
+    static Manifest open(final Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            final long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new WalkerException("Not a walk manifest: " + file);
+            }
+            final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            final HashAlgorithm algorithm = HashAlgorithm.forId(header.getInt(8));
+            final long count = header.getLong(16);
+            final long indexOffset = header.getLong(24);
+            final int blockEntries = header.getInt(32);
+            final int maxBlockLength = header.getInt(36);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || algorithm == null || header.getInt(12) != algorithm.getLength()
+                    || count < 0 || blockEntries <= 0 || maxBlockLength < 0
+                    || indexOffset < HEADER_SIZE || indexOffset + (count + blockEntries - 1) / blockEntries * 8 > size) {
+                throw new WalkerException("Not a walk manifest: " + file);
+            }
+            // Windows overlap by the longest block, so every block and index entry lies within one window
+            final long overlap = Math.min(Math.max(maxBlockLength, Long.BYTES), Integer.MAX_VALUE - WINDOW_SIZE);
+            final MappedByteBuffer[] windows = new MappedByteBuffer[(int) ((size + WINDOW_SIZE - 1) / WINDOW_SIZE)];
+            for (int i = 0; i < windows.length; i++) {
+                final long start = i * WINDOW_SIZE;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, WINDOW_SIZE + overlap));
+            }
+            return new Manifest(channel, algorithm, count, indexOffset, blockEntries, windows);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    long size() {
+        return count;
+    }
+
+    /**
+     * Copies the hash of the path into {@code digest}.
+     *
+     * @return {@code null} if the path is absent, otherwise whether the hash is a tree hash
+     */
+    Boolean get(final String path, final byte[] digest) {
+        final byte[] key = path.getBytes(StandardCharsets.UTF_8);
+        long left = 0;
+        long right = blocks - 1;
+        long block = -1;
+        while (left <= right) {
+            final long middle = (left + right) >>> 1;
+            final ByteBuffer buffer = block(middle);
+            readVarint(buffer);
+            final int length = readVarint(buffer);
+            if (compare(buffer, length, key) <= 0) {
+                block = middle;
+                left = middle + 1;
+            } else {
+                right = middle - 1;
+            }
+        }
+        if (block < 0) {
+            return null;
+        }
+        final Cursor cursor = new Cursor(block);
+        while (cursor.next() && cursor.block == block) {
+            final int compared = Arrays.compareUnsigned(cursor.path, 0, cursor.pathLength, key, 0, key.length);
+            if (compared == 0) {
+                System.arraycopy(cursor.hash, 0, digest, 0, digest.length);
+                return cursor.tree;
+            }
+            if (compared > 0) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns cursor over all entries in path order.
+     */
+    Cursor cursor() {
+        return new Cursor(0);
+    }
+
+    private ByteBuffer block(final long block) {
+        final long offset = getLong(indexOffset + block * Long.BYTES);
+        final ByteBuffer buffer = windows[(int) (offset / WINDOW_SIZE)].duplicate();
+        buffer.position((int) (offset % WINDOW_SIZE));
+        return buffer;
+    }
+
+    private long getLong(final long position) {
+        return windows[(int) (position / WINDOW_SIZE)].getLong((int) (position % WINDOW_SIZE));
+    }
+
+    // Compares next length bytes of the buffer with the key as unsigned bytes
+    private static int compare(final ByteBuffer buffer, final int length, final byte[] key) {
+        final int common = Math.min(length, key.length);
+        final int position = buffer.position();
+        for (int i = 0; i < common; i++) {
+            final int compared = Integer.compare(buffer.get(position + i) & 0xff, key[i] & 0xff);
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private static int readVarint(final ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            final byte b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Sequential reader of entries. Path and hash arrays are reused by the following entries.
+     */
+    class Cursor {
+        private final byte[] hash = new byte[algorithm.getLength()];
+        private byte[] path = new byte[256];
+        private int pathLength;
+        private boolean tree;
+        private long block;
+        private long index;
+        private ByteBuffer buffer;
+
+        private Cursor(final long block) {
+            this.block = block - 1;
+            this.index = block * blockEntries;
+        }
+
+        boolean next() {
+            if (index >= count) {
+                return false;
+            }
+            if (index % blockEntries == 0) {
+                buffer = Manifest.this.block(++block);
+            }
+            index++;
+            final int prefix = readVarint(buffer);
+            final int suffix = readVarint(buffer);
+            if (prefix + suffix > path.length) {
+                path = Arrays.copyOf(path, Math.max(prefix + suffix, 2 * path.length));
+            }
+            buffer.get(path, prefix, suffix);
+            pathLength = prefix + suffix;
+            tree = (buffer.get() & TREE_FLAG) != 0;
+            buffer.get(hash);
+            return true;
+        }
+
+        byte[] getPath() {
+            return path;
+        }
+
+        int getPathLength() {
+            return pathLength;
+        }
+
+        String getPathString() {
+            return new String(path, 0, pathLength, StandardCharsets.UTF_8);
+        }
+
+        byte[] getHash() {
+            return hash;
+        }
+
+        boolean isTree() {
+            return tree;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ru.ifmo.rain.laptev.walk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Queries binary manifests written with {@code --manifest}.
+ * {@code lookup} prints hashes of the given paths, {@code diff} prints entries added ({@code +}),
+ * removed ({@code -}) and changed ({@code ~}, old and new hash) between two manifests with one merge join.
+ */
+public class ManifestTool {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    public static void main(String[] args) {
+        if (args == null || args.length < 2 || Arrays.asList(args).contains(null)
+                || !(args[0].equals("lookup") || args[0].equals("diff") && args.length == 3)) {
+            System.err.println("Usage: lookup [manifest] [path...] | diff [old manifest] [new manifest]");
+            return;
+        }
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16)) {
+            if (args[0].equals("lookup")) {
+                lookup(args, writer);
+            } else {
+                diff(args[1], args[2], writer);
+            }
+        } catch (InvalidPathException e) {
+            System.err.println("Incorrect manifest file name: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    private static void lookup(final String[] args, final Writer writer) throws IOException {
+        try (Manifest manifest = Manifest.open(Paths.get(args[1]))) {
+            final byte[] digest = new byte[manifest.getAlgorithm().getLength()];
+            for (int i = 2; i < args.length; i++) {
+                final Boolean tree = manifest.get(args[i], digest);
+                if (tree == null) {
+                    writer.write("not found " + args[i] + System.lineSeparator());
+                } else {
+                    writer.write(hex(digest, tree) + " " + args[i] + System.lineSeparator());
+                }
+            }
+        }
+    }
+
+    private static void diff(final String oldFile, final String newFile, final Writer writer) throws IOException {
+        try (Manifest oldManifest = Manifest.open(Paths.get(oldFile));
+             Manifest newManifest = Manifest.open(Paths.get(newFile))) {
+            if (oldManifest.getAlgorithm() != newManifest.getAlgorithm()) {
+                throw new WalkerException("Manifests use different hash algorithms");
+            }
+            final Manifest.Cursor oldCursor = oldManifest.cursor();
+            final Manifest.Cursor newCursor = newManifest.cursor();
+            boolean hasOld = oldCursor.next();
+            boolean hasNew = newCursor.next();
+            long added = 0;
+            long removed = 0;
+            long changed = 0;
+            while (hasOld || hasNew) {
+                final int compared = !hasOld ? 1 : !hasNew ? -1 : Arrays.compareUnsigned(
+                        oldCursor.getPath(), 0, oldCursor.getPathLength(), newCursor.getPath(), 0, newCursor.getPathLength());
+                if (compared < 0) {
+                    writer.write("- " + hex(oldCursor.getHash(), oldCursor.isTree()) + " " + oldCursor.getPathString()
+                            + System.lineSeparator());
+                    removed++;
+                    hasOld = oldCursor.next();
+                } else if (compared > 0) {
+                    writer.write("+ " + hex(newCursor.getHash(), newCursor.isTree()) + " " + newCursor.getPathString()
+                            + System.lineSeparator());
+                    added++;
+                    hasNew = newCursor.next();
+                } else {
+                    if (oldCursor.isTree() != newCursor.isTree() || !Arrays.equals(oldCursor.getHash(), newCursor.getHash())) {
+                        writer.write("~ " + hex(oldCursor.getHash(), oldCursor.isTree()) + " "
+                                + hex(newCursor.getHash(), newCursor.isTree()) + " " + newCursor.getPathString()
+                                + System.lineSeparator());
+                        changed++;
+                    }
+                    hasOld = oldCursor.next();
+                    hasNew = newCursor.next();
+                }
+            }
+            System.err.println("added " + added + ", removed " + removed + ", changed " + changed);
+        }
+    }
+
+    private static String hex(final byte[] hash, final boolean tree) {
+        final StringBuilder builder = new StringBuilder(tree ? "tree:" : "");
+        for (byte b : hash) {
+            builder.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,252 @@
+package ru.ifmo.rain.laptev.walk;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Passes records to another writer and collects them into a binary {@link Manifest}.
+ * Records are sorted by path in memory-bounded runs spilled to temporary files next to the manifest,
+ * {@link #finish()} merges the runs into the manifest. A path written twice keeps its first hash.
+ * {@link #close()} removes the runs but doesn't close the wrapped writer.
+ */
+class ManifestWriter implements HashWriter {
+    private static final long RUN_BYTES = 64L << 20;
+    private static final int RECORD_OVERHEAD = 64;
+    private static final int BUFF_SIZE = 1 << 16;
+    private static final Comparator<Record> PATH_ORDER =
+            (first, second) -> Arrays.compareUnsigned(first.path, second.path);
+
+    private final Path file;
+    private final HashWriter writer;
+    private final HashAlgorithm algorithm;
+    private final List<Record> records = new ArrayList<>();
+    private final List<Path> runs = new ArrayList<>();
+    private long recordBytes;
+
+    ManifestWriter(final Path file, final HashWriter writer, final HashAlgorithm algorithm) {
+        this.file = file;
+        this.writer = writer;
+        this.algorithm = algorithm;
+    }
+
+    @Override
+    public void write(final byte[] hash, final String file, final boolean tree) throws IOException {
+        writer.write(hash, file, tree);
+        final Record record = new Record(file.getBytes(StandardCharsets.UTF_8), hash.clone(), tree);
+        records.add(record);
+        recordBytes += record.path.length + record.hash.length + RECORD_OVERHEAD;
+        if (recordBytes >= RUN_BYTES) {
+            spill();
+        }
+    }
+
+    @Override
+    public boolean skipsNext() {
+        return writer.skipsNext();
+    }
+
+    @Override
+    public void endGroup() throws IOException {
+        writer.endGroup();
+    }
+
+    private void spill() throws IOException {
+        records.sort(PATH_ORDER);
+        final Path run = Files.createTempFile(parent(), file.getFileName().toString(), ".run");
+        runs.add(run);
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), BUFF_SIZE))) {
+            for (Record record : records) {
+                output.writeInt(record.path.length);
+                output.write(record.path);
+                output.writeBoolean(record.tree);
+                output.write(record.hash);
+            }
+        }
+        records.clear();
+        recordBytes = 0;
+    }
+
+    /**
+     * Writes the manifest of all records, replacing the manifest file atomically.
+     */
+    void finish() throws IOException {
+        final List<RunReader> readers = new ArrayList<>();
+        try {
+            final Iterator<Record> sorted;
+            if (runs.isEmpty()) {
+                records.sort(PATH_ORDER);
+                sorted = records.iterator();
+            } else {
+                spill();
+                for (Path run : runs) {
+                    readers.add(new RunReader(run, readers.size()));
+                }
+                sorted = merge(readers);
+            }
+            final Path temporary = Files.createTempFile(parent(), file.getFileName().toString(), ".tmp");
+            try {
+                try {
+                    write(temporary, sorted);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.input.close();
+            }
+            records.clear();
+        }
+    }
+
+    private void write(final Path temporary, final Iterator<Record> sorted) throws IOException {
+        long count = 0;
+        long position = Manifest.HEADER_SIZE;
+        long blockStart = position;
+        int maxBlockLength = 0;
+        long[] offsets = new long[1024];
+        byte[] previous = null;
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), BUFF_SIZE))) {
+            output.write(new byte[Manifest.HEADER_SIZE]);
+            while (sorted.hasNext()) {
+                final Record record = sorted.next();
+                if (previous != null && Arrays.equals(previous, record.path)) {
+                    continue;
+                }
+                int prefix = 0;
+                if (count % Manifest.BLOCK_ENTRIES == 0) {
+                    final int block = (int) (count / Manifest.BLOCK_ENTRIES);
+                    if (block == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+                    }
+                    maxBlockLength = (int) Math.max(maxBlockLength, position - blockStart);
+                    offsets[block] = blockStart = position;
+                } else {
+                    prefix = Arrays.mismatch(previous, record.path);
+                }
+                final int suffix = record.path.length - prefix;
+                position += writeVarint(output, prefix) + writeVarint(output, suffix);
+                output.write(record.path, prefix, suffix);
+                output.writeByte(record.tree ? Manifest.TREE_FLAG : 0);
+                output.write(record.hash);
+                position += suffix + 1 + record.hash.length;
+                previous = record.path;
+                count++;
+            }
+            maxBlockLength = (int) Math.max(maxBlockLength, position - blockStart);
+            final int blocks = (int) ((count + Manifest.BLOCK_ENTRIES - 1) / Manifest.BLOCK_ENTRIES);
+            for (int i = 0; i < blocks; i++) {
+                output.writeLong(offsets[i]);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            final ByteBuffer header = ByteBuffer.allocate(Manifest.HEADER_SIZE);
+            header.putInt(Manifest.MAGIC).putInt(Manifest.VERSION).putInt(algorithm.getId())
+                    .putInt(algorithm.getLength()).putLong(count).putLong(position)
+                    .putInt(Manifest.BLOCK_ENTRIES).putInt(maxBlockLength).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+    }
+
+    private static int writeVarint(final DataOutputStream output, int value) throws IOException {
+        int length = 1;
+        while ((value & ~0x7f) != 0) {
+            output.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+            length++;
+        }
+        output.writeByte(value);
+        return length;
+    }
+
+    // Equal paths come from the earliest run first, so the first hash is kept
+    private static Iterator<Record> merge(final List<RunReader> readers) throws IOException {
+        final PriorityQueue<RunReader> queue = new PriorityQueue<>(
+                Comparator.comparing((RunReader reader) -> reader.current, PATH_ORDER).thenComparingInt(reader -> reader.index));
+        for (RunReader reader : readers) {
+            if (reader.advance()) {
+                queue.add(reader);
+            }
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public Record next() {
+                final RunReader reader = queue.remove();
+                final Record record = reader.current;
+                try {
+                    if (reader.advance()) {
+                        queue.add(reader);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return record;
+            }
+        };
+    }
+
+    private Path parent() {
+        return file.toAbsolutePath().getParent();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+    }
+
+    private static class Record {
+        private final byte[] path;
+        private final byte[] hash;
+        private final boolean tree;
+
+        private Record(final byte[] path, final byte[] hash, final boolean tree) {
+            this.path = path;
+            this.hash = hash;
+            this.tree = tree;
+        }
+    }
+
+    private class RunReader {
+        private final DataInputStream input;
+        private final int index;
+        private Record current;
+
+        private RunReader(final Path run, final int index) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), BUFF_SIZE));
+            this.index = index;
+        }
+
+        private boolean advance() throws IOException {
+            final int length;
+            try {
+                length = input.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            final byte[] path = new byte[length];
+            input.readFully(path);
+            final boolean tree = input.readBoolean();
+            final byte[] hash = new byte[algorithm.getLength()];
+            input.readFully(hash);
+            current = new Record(path, hash, tree);
+            return true;
+        }
+    }
+}
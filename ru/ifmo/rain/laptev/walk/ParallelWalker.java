@@ -0,0 +1,256 @@
+package ru.ifmo.rain.laptev.walk;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Walks file trees on a fork/join pool while writing hashes in the same order
+ * as {@link Files#walkFileTree(Path, FileVisitor)} would visit them.
+ * Workers list directories and hash files ahead, the calling thread joins entries in visit order.
+ * At most {@link #LOOKAHEAD_PER_THREAD} entries per thread are started and not yet written,
+ * children beyond that are started by the calling thread once it reaches their directory.
+ */
+class ParallelWalker {
+    static final int LOOKAHEAD_PER_THREAD = 1 << 10;
+
+    private final ForkJoinPool pool;
+    private final FileVisitorHash fileVisitorHash;
+    private final boolean followLinks;
+    private final Semaphore window;
+
+    ParallelWalker(final ForkJoinPool pool, final FileVisitorHash fileVisitorHash, final boolean followLinks) {
+        this.pool = pool;
+        this.fileVisitorHash = fileVisitorHash;
+        this.followLinks = followLinks;
+        this.window = new Semaphore(pool.getParallelism() * LOOKAHEAD_PER_THREAD);
+    }
+
+    void walk(final Path root) throws IOException {
+        final Entry rootEntry = newEntry(root, null);
+        rootEntry.started = true;
+        pool.execute(rootEntry);
+        final Deque<Entry> stack = new ArrayDeque<>();
+        stack.push(rootEntry);
+        while (!stack.isEmpty()) {
+            final Entry entry = stack.pop();
+            if (!entry.started) {
+                entry.started = true;
+                pool.execute(entry);
+            }
+            entry.join();
+            if (entry.windowed) {
+                window.release();
+            }
+            entry.write(stack);
+        }
+    }
+
+    // Starts children a directory could not fork for lack of window, while the window allows
+    private void startChildren(final List<Entry> entries, final int from) {
+        for (int i = from; i < entries.size() && window.tryAcquire(); i++) {
+            final Entry entry = entries.get(i);
+            entry.started = true;
+            entry.windowed = true;
+            pool.execute(entry);
+        }
+    }
+
+    private Entry newEntry(final Path path, final DirectoryEntry parent) {
+        try {
+            final BasicFileAttributes attributes = readAttributes(path);
+            if (attributes.isDirectory()) {
+                if (followLinks && wouldLoop(path, attributes.fileKey(), parent)) {
+                    return new FailedEntry(path);
+                }
+                return new DirectoryEntry(path, attributes.fileKey(), parent);
+            }
+            return new FileEntry(path, attributes);
+        } catch (IOException e) {
+            return new FailedEntry(path);
+        }
+    }
+
+    // Broken links are visited as files, the same way Files.walkFileTree does
+    private BasicFileAttributes readAttributes(final Path path) throws IOException {
+        if (followLinks) {
+            try {
+                return Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException ignored) {
+            }
+        }
+        return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    }
+
+    private static boolean wouldLoop(final Path path, final Object fileKey, DirectoryEntry ancestor) {
+        for (; ancestor != null; ancestor = ancestor.parent) {
+            if (fileKey != null && ancestor.fileKey != null) {
+                if (fileKey.equals(ancestor.fileKey)) {
+                    return true;
+                }
+            } else {
+                try {
+                    if (Files.isSameFile(path, ancestor.path)) {
+                        return true;
+                    }
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        return false;
+    }
+
+    private abstract static class Entry extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final Path path;
+        // Written before the entry is forked and read after its parent is joined
+        boolean started;
+        boolean windowed;
+
+        private Entry(final Path path) {
+            this.path = path;
+        }
+
+        abstract void write(final Deque<Entry> stack) throws IOException;
+    }
+
+    private class FileEntry extends Entry {
+        private static final long serialVersionUID = 1L;
+
+        private BasicFileAttributes attributes;
+        private byte[] hash;
+        private boolean tree;
+
+        private FileEntry(final Path path, final BasicFileAttributes attributes) {
+            super(path);
+            this.attributes = attributes;
+        }
+
+        @Override
+        protected void compute() {
+            hash = fileVisitorHash.newDigest();
+            tree = fileVisitorHash.hashFile(path, attributes, hash);
+            attributes = null;
+        }
+
+        @Override
+        void write(final Deque<Entry> stack) throws IOException {
+            fileVisitorHash.writeHash(hash, path.toString(), tree);
+        }
+    }
+
+    private class FailedEntry extends Entry {
+        private static final long serialVersionUID = 1L;
+
+        private FailedEntry(final Path path) {
+            super(path);
+        }
+
+        @Override
+        protected void compute() {
+        }
+
+        @Override
+        void write(final Deque<Entry> stack) throws IOException {
+            fileVisitorHash.processException(path.toString());
+        }
+    }
+
+    private class DirectoryEntry extends Entry {
+        private static final long serialVersionUID = 1L;
+
+        private final Object fileKey;
+        private final DirectoryEntry parent;
+        private List<Entry> children;
+        private int forkedChildren;
+        private IOException openException;
+        private IOException iterationException;
+
+        private DirectoryEntry(final Path path, final Object fileKey, final DirectoryEntry parent) {
+            super(path);
+            this.fileKey = fileKey;
+            this.parent = parent;
+        }
+
+        @Override
+        protected void compute() {
+            fileVisitorHash.visitDirectory(path);
+            final DirectoryStream<Path> stream;
+            try {
+                stream = Files.newDirectoryStream(path);
+            } catch (IOException e) {
+                openException = e;
+                return;
+            }
+            final List<Entry> entries = new ArrayList<>();
+            try (stream) {
+                for (Path child : stream) {
+                    entries.add(newEntry(child, this));
+                }
+            } catch (DirectoryIteratorException e) {
+                iterationException = e.getCause();
+            } catch (IOException e) {
+                iterationException = e;
+            }
+            int forked = 0;
+            while (forked < entries.size() && window.tryAcquire()) {
+                forked++;
+            }
+            // Forked in reverse so that the owning worker pops them in visit order
+            for (int i = forked - 1; i >= 0; i--) {
+                final Entry entry = entries.get(i);
+                entry.started = true;
+                entry.windowed = true;
+                entry.fork();
+            }
+            forkedChildren = forked;
+            children = entries;
+        }
+
+        @Override
+        void write(final Deque<Entry> stack) throws IOException {
+            if (openException != null) {
+                fileVisitorHash.processException(path.toString());
+                return;
+            }
+            if (iterationException != null) {
+                stack.push(new FailedIterationEntry(path, iterationException));
+            }
+            startChildren(children, forkedChildren);
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(children.get(i));
+            }
+            children = null;
+        }
+    }
+
+    private static class FailedIterationEntry extends Entry {
+        private static final long serialVersionUID = 1L;
+
+        private final IOException exception;
+
+        private FailedIterationEntry(final Path path, final IOException exception) {
+            super(path);
+            this.exception = exception;
+            this.started = true;
+            complete(null);
+        }
+
+        @Override
+        protected void compute() {
+        }
+
+        @Override
+        void write(final Deque<Entry> stack) throws IOException {
+            throw exception;
+        }
+    }
+}
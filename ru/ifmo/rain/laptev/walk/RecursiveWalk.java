@@ -1,27 +1,29 @@
 package ru.ifmo.rain.laptev.walk;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.InvalidPathException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.*;
 
 public class RecursiveWalk {
 
     public static void main(String[] args) {
-        if (args == null || args.length != 2 ||  args[1] == null || args[0] == null) {
-            System.err.println("Usage [input file] [output file]");
+        if (args == null || args.length < 2 ||  args[1] == null || args[0] == null) {
+            System.err.println("Usage [input file] [output file] [--threads count] [--mmap-threshold bytes] [--cache file]"
+                    + " [--hash fnv1-32|fnv1a-64|xxhash64|sha-256] [--watch] [--debounce millis]"
+                    + " [--dedupe kib] [--tree-hash chunk-mib] [--link-aware] [--follow-links]"
+                    + " [--jmx] [--progress seconds] [--checkpoint file] [--checkpoint-interval seconds]"
+                    + " [--async-io outstanding-mib] [--manifest file]");
         } else {
             try {
-                new RecursiveWalk().run(args[0], args[1]);
+                new RecursiveWalk().run(args[0], args[1], WalkOptions.parse(args, 2));
             } catch (WalkerException e) {
                 System.err.println(e.getMessage());
             }
         }
     }
 
-    private void run(final String input, final String output) throws WalkerException {
+    private void run(final String input, final String output, final WalkOptions options) throws WalkerException {
         Path inputFile;
         Path outputFile;
         try {
@@ -47,10 +49,47 @@ public class RecursiveWalk {
             throw new WalkerException("Access problem with output file parent", e);
         }
 
+        HashWatcher watcher = null;
+        if (options.isWatch()) {
+            try {
+                watcher = new HashWatcher(outputFile,
+                        new FileHasher(options.getAlgorithm(), options.getMappingThreshold(), options.getTreeChunkSize(), null),
+                        options.getDebounceMillis());
+            } catch (IOException e) {
+                throw new WalkerException("Can't create watch service", e);
+            }
+        }
+
+        Checkpoint checkpoint = null;
+        if (options.getCheckpointFile() != null) {
+            try {
+                checkpoint = Checkpoint.open(options.getCheckpointFile(), options.getCheckpointSeconds());
+            } catch (IOException e) {
+                throw new WalkerException("Can't read checkpoint file", e);
+            }
+        }
+
         try (Reader reader = Files.newBufferedReader(inputFile, StandardCharsets.UTF_8)) {
-            try (Writer writer = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8)) {
-                RecursiveWalker recursiveWalker = new RecursiveWalker(reader, writer);
+            try (FileChannel channel = openOutput(outputFile, checkpoint);
+                 AsyncHashWriter asyncWriter = new AsyncHashWriter(channel, options.getAlgorithm().getLength());
+                 ManifestWriter manifestWriter = options.getManifestFile() == null
+                         ? null : new ManifestWriter(options.getManifestFile(), asyncWriter, options.getAlgorithm())) {
+                HashWriter writer = manifestWriter == null ? asyncWriter : manifestWriter;
+                if (checkpoint != null) {
+                    checkpoint.start(asyncWriter, channel);
+                    writer = checkpoint;
+                }
+                RecursiveWalker recursiveWalker = new RecursiveWalker(reader, writer, options, watcher, checkpoint);
                 recursiveWalker.walk();
+                if (manifestWriter != null) {
+                    try {
+                        manifestWriter.finish();
+                    } catch (IOException e) {
+                        throw new WalkerException("Can't write manifest file", e);
+                    }
+                }
+            } catch (WalkerException e) {
+                throw e;
             } catch (FileNotFoundException e) {
                 throw new WalkerException("Input file not found", e);
             } catch (IOException e) {
@@ -58,10 +97,47 @@ public class RecursiveWalk {
             } catch (SecurityException e) {
                 throw new WalkerException("Access problem with output file", e);
             }
+        } catch (WalkerException e) {
+            throw e;
         } catch (IOException e) {
             throw new WalkerException("Error occurs opening the output file", e);
         } catch (SecurityException e) {
             throw new WalkerException("Access problem with input file", e);
         }
+
+        if (checkpoint != null) {
+            try {
+                checkpoint.complete();
+            } catch (IOException e) {
+                throw new WalkerException("Can't delete checkpoint file", e);
+            }
+        }
+
+        if (watcher != null) {
+            try {
+                watcher.watch();
+            } catch (IOException e) {
+                throw new WalkerException("Error occurs updating the output file", e);
+            }
+        }
+    }
+
+    private static FileChannel openOutput(final Path outputFile, final Checkpoint checkpoint) throws IOException {
+        if (checkpoint == null || !checkpoint.isResumed()) {
+            return FileChannel.open(outputFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+        final FileChannel channel = FileChannel.open(outputFile, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < checkpoint.getOutputLength()) {
+                throw new WalkerException("Output file is shorter than the checkpoint, can't resume");
+            }
+            channel.truncate(checkpoint.getOutputLength());
+            channel.position(checkpoint.getOutputLength());
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
     }
 }
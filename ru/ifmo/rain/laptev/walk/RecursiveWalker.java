@@ -3,30 +3,117 @@ package ru.ifmo.rain.laptev.walk;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.Writer;
 import java.nio.file.*;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 class RecursiveWalker {
 
     private final Reader reader;
-    private final Writer writer;
+    private final HashWriter writer;
+    private final WalkOptions options;
+    private final HashWatcher watcher;
+    private final Checkpoint checkpoint;
 
-    RecursiveWalker(Reader reader, Writer writer) {
+    RecursiveWalker(Reader reader, HashWriter writer) {
+        this(reader, writer, new WalkOptions(), null, null);
+    }
+
+    RecursiveWalker(Reader reader, HashWriter writer, WalkOptions options, HashWatcher watcher, Checkpoint checkpoint) {
         this.reader = reader;
-        this.writer = writer;
+        this.writer = watcher == null ? writer : watcher.record(writer);
+        this.options = options;
+        this.watcher = watcher;
+        this.checkpoint = checkpoint;
     }
 
     void walk() throws IOException {
-        FileVisitorHash fileVisitorHash = new FileVisitorHash(writer);
+        ForkJoinPool pool = options.isParallel() ? new ForkJoinPool(options.getThreads()) : null;
+        WalkMetrics metrics = null;
+        if (options.isJmx() || options.getProgressSeconds() > 0) {
+            metrics = new WalkMetrics();
+            if (options.isJmx()) {
+                metrics.register();
+            }
+            if (options.getProgressSeconds() > 0) {
+                metrics.startReporting(options.getProgressSeconds());
+            }
+        }
+        try {
+            walk(pool, metrics);
+        } finally {
+            if (metrics != null) {
+                metrics.stop();
+            }
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private void walk(ForkJoinPool pool, WalkMetrics metrics) throws IOException {
+        HashAlgorithm algorithm = options.getAlgorithm();
+        HashCache cache = options.getCacheFile() == null
+                ? null : HashCache.open(options.getCacheFile(), algorithm, options.getTreeChunkSize());
+        FileHasher fileHasher = new FileHasher(algorithm, options.getMappingThreshold(), options.getTreeChunkSize(), pool);
+        FileKeyHashes fileKeyHashes = options.isLinkAware() ? new FileKeyHashes(fileHasher) : null;
+        FileVisitorHash fileVisitorHash = new FileVisitorHash(writer, fileHasher, cache, watcher, fileKeyHashes, metrics);
+        if (options.getDedupeLength() > 0) {
+            DuplicateFinder duplicateFinder = new DuplicateFinder(fileHasher, options.getDedupeLength(), pool);
+            walk(duplicateFinder::add, duplicateFinder::invalidRoot);
+            duplicateFinder.write(writer);
+        } else if (options.getAsyncOutstanding() > 0) {
+            AsyncWalker asyncWalker = new AsyncWalker(fileVisitorHash, fileHasher, options.getAsyncOutstanding(),
+                    pool, visitOptions());
+            walk(asyncWalker::walk, fileVisitorHash::processException);
+        } else if (pool == null) {
+            Set<FileVisitOption> visitOptions = visitOptions();
+            walk(root -> Files.walkFileTree(root, visitOptions, Integer.MAX_VALUE, fileVisitorHash),
+                    fileVisitorHash::processException);
+        } else {
+            ParallelWalker parallelWalker = new ParallelWalker(pool, fileVisitorHash, options.isFollowLinks());
+            walk(parallelWalker::walk, fileVisitorHash::processException);
+        }
+        if (cache != null) {
+            cache.save();
+        }
+    }
+
+    private Set<FileVisitOption> visitOptions() {
+        return options.isFollowLinks() ? EnumSet.of(FileVisitOption.FOLLOW_LINKS) : EnumSet.noneOf(FileVisitOption.class);
+    }
+
+    private void walk(RootWalker rootWalker, InvalidRootHandler invalidRootHandler) throws IOException {
         try (final BufferedReader bufferedReader = new BufferedReader(reader)) {
             String pathToFile;
-            while ((pathToFile = bufferedReader.readLine()) != null) {
+            for (long line = 0; (pathToFile = bufferedReader.readLine()) != null; line++) {
+                if (checkpoint != null && !checkpoint.startLine(line)) {
+                    continue;
+                }
                 try {
-                    Files.walkFileTree(Paths.get(pathToFile), fileVisitorHash);
+                    Path root = Paths.get(pathToFile);
+                    if (watcher != null) {
+                        watcher.watchRoot(root);
+                    }
+                    rootWalker.walk(root);
                 } catch (InvalidPathException e) {
-                   fileVisitorHash.processException(pathToFile);
+                   invalidRootHandler.invalid(pathToFile);
+                }
+                if (checkpoint != null) {
+                    checkpoint.endLine();
                 }
             }
         }
     }
+
+    @FunctionalInterface
+    private interface RootWalker {
+        void walk(Path root) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface InvalidRootHandler {
+        void invalid(String root) throws IOException;
+    }
 }
@@ -0,0 +1,330 @@
+package ru.ifmo.rain.laptev.walk;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks hashing strategies of the walk on generated trees: many tiny files, a few huge files and deep nesting.
+ * Trees are generated from a fixed seed, so every run hashes the same bytes.
+ * Each strategy is run for the warmup iterations first, then mean and deviation of throughput over the measured
+ * iterations are reported together with the bytes allocated per file by the walking thread.
+ *
+ * <p>The {@code stream-baseline} strategy is the walk before {@link FileHasher}: a new 1 KiB buffer and
+ * a {@link BufferedInputStream} per file, and a formatted line per file. The {@code stream-*} strategies hash through
+ * {@link InputStream} with the given buffer size reused for the whole walk. Other strategies run {@link RecursiveWalker} with the given options. Parallel walks
+ * allocate in pool threads, so their allocation is not reported. Files are read through the page cache:
+ * the first warmup iteration loads it.
+ */
+class WalkBenchmark {
+    private static final long SEED = 0x57414c4bL;
+
+    private final Path directory;
+    private final int warmup;
+    private final int iterations;
+    private final int scale;
+    private final com.sun.management.ThreadMXBean threadBean;
+
+    private WalkBenchmark(final Path directory, final int warmup, final int iterations, final int scale) {
+        this.directory = directory;
+        this.warmup = warmup;
+        this.iterations = iterations;
+        this.scale = scale;
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        this.threadBean = bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                ? (com.sun.management.ThreadMXBean) bean : null;
+    }
+
+    public static void main(final String[] args) {
+        int warmup = 3;
+        int iterations = 5;
+        int scale = 1;
+        Path directory = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--warmup":
+                        warmup = Integer.parseInt(args[++i]);
+                        break;
+                    case "--iterations":
+                        iterations = Integer.parseInt(args[++i]);
+                        break;
+                    case "--scale":
+                        scale = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        directory = Paths.get(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException | InvalidPathException e) {
+            System.err.println("Usage [directory] [--warmup count] [--iterations count] [--scale factor]");
+            return;
+        }
+        if (warmup < 0 || iterations <= 0 || scale <= 0) {
+            System.err.println("Iterations and scale must be positive");
+            return;
+        }
+        try {
+            final boolean temporary = directory == null;
+            if (temporary) {
+                directory = Files.createTempDirectory("walk-benchmark");
+            }
+            try {
+                new WalkBenchmark(directory, warmup, iterations, scale).run();
+            } finally {
+                if (temporary) {
+                    delete(directory);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Benchmark failed: " + e.getMessage());
+        }
+    }
+
+    private void run() throws IOException {
+        final List<Strategy> strategies = strategies();
+        System.out.printf("%-6s %-16s %10s %10s %12s %12s %10s%n",
+                "tree", "strategy", "MB/s", "+-", "files/s", "+-", "B/file");
+        for (Tree tree : trees()) {
+            final Path root = directory.resolve(tree.name);
+            if (!Files.isDirectory(root)) {
+                tree.generator.generate(root, new Random(SEED));
+            }
+            final long[] totals = totals(root);
+            for (Strategy strategy : strategies) {
+                for (int i = 0; i < warmup; i++) {
+                    strategy.walk(root);
+                }
+                final double[] seconds = new double[iterations];
+                long allocated = 0;
+                for (int i = 0; i < iterations; i++) {
+                    final long allocatedBefore = allocatedBytes();
+                    final long start = System.nanoTime();
+                    strategy.walk(root);
+                    seconds[i] = (System.nanoTime() - start) / 1e9;
+                    allocated += allocatedBytes() - allocatedBefore;
+                }
+                final String allocation = threadBean == null || strategy.parallel
+                        ? "-" : String.valueOf(allocated / iterations / Math.max(1, totals[0]));
+                System.out.printf("%-6s %-16s %10.1f %10.1f %12.0f %12.0f %10s%n", tree.name, strategy.name,
+                        mean(seconds, totals[1] / 1e6), deviation(seconds, totals[1] / 1e6),
+                        mean(seconds, totals[0]), deviation(seconds, totals[0]), allocation);
+            }
+        }
+    }
+
+    private List<Tree> trees() {
+        final List<Tree> trees = new ArrayList<>();
+        trees.add(new Tree("tiny", (root, random) -> {
+            for (int i = 0; i < 20_000 * scale; i++) {
+                writeFile(root.resolve(String.valueOf(i % 100)).resolve(i + ".bin"), random.nextInt(4096), random);
+            }
+        }));
+        trees.add(new Tree("huge", (root, random) -> {
+            for (int i = 0; i < 4; i++) {
+                writeFile(root.resolve(i + ".bin"), (128L << 20) * scale, random);
+            }
+        }));
+        trees.add(new Tree("deep", (root, random) -> {
+            Path directory = root;
+            for (int i = 0; i < 64 * scale; i++) {
+                directory = directory.resolve("d" + i);
+                for (int j = 0; j < 16; j++) {
+                    writeFile(directory.resolve(j + ".bin"), random.nextInt(64 << 10), random);
+                }
+            }
+        }));
+        return trees;
+    }
+
+    private static List<Strategy> strategies() throws IOException {
+        final List<Strategy> strategies = new ArrayList<>();
+        strategies.add(new Strategy("stream-baseline", false, WalkBenchmark::baselineWalk));
+        for (int size : new int[]{4 << 10, 64 << 10, 1 << 20}) {
+            strategies.add(new Strategy("stream-" + (size >> 10) + "k", false, root -> streamWalk(root, size)));
+        }
+        strategies.add(walkerStrategy("channel"));
+        strategies.add(walkerStrategy("mmap", "--mmap-threshold", "0"));
+        strategies.add(walkerStrategy("xxhash64", "--hash", "xxhash64"));
+        final int threads = Runtime.getRuntime().availableProcessors();
+        if (threads > 1) {
+            strategies.add(walkerStrategy("threads-" + threads, "--threads", String.valueOf(threads)));
+        }
+        return strategies;
+    }
+
+    private static Strategy walkerStrategy(final String name, final String... args) throws IOException {
+        final WalkOptions options = WalkOptions.parse(args, 0);
+        return new Strategy(name, options.isParallel(), root ->
+                new RecursiveWalker(new StringReader(root.toString()), new NullWriter(), options, null, null).walk());
+    }
+
+    // Copy of FileVisitorHash.visitFile before FileHasher
+    private static void baselineWalk(final Path root) throws IOException {
+        final Writer writer = Writer.nullWriter();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) throws IOException {
+                int hash = 0x811c9dc5;
+                byte[] bytes = new byte[1024];
+                try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(file))) {
+                    int countOfBytes;
+                    while ((countOfBytes = inputStream.read(bytes)) >= 0) {
+                        for (int i = 0; i < countOfBytes; i++) {
+                            hash = (hash * 0x01000193) ^ (bytes[i] & 0xff);
+                        }
+                    }
+                } catch (IOException e) {
+                    hash = 0;
+                }
+                String hexHash = String.format("%08x", hash);
+                writer.write(hexHash + " " + file + System.lineSeparator());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void streamWalk(final Path root, final int bufferSize) throws IOException {
+        final byte[] digest = new byte[HashAlgorithm.FNV1_32.getLength()];
+        final HashWriter writer = new NullWriter();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            private final byte[] buffer = new byte[bufferSize];
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) throws IOException {
+                int hash = 0x811c9dc5;
+                try (InputStream inputStream = Files.newInputStream(file)) {
+                    int read;
+                    while ((read = inputStream.read(buffer)) >= 0) {
+                        for (int i = 0; i < read; i++) {
+                            hash = (hash * 0x01000193) ^ (buffer[i] & 0xff);
+                        }
+                    }
+                } catch (IOException e) {
+                    hash = 0;
+                }
+                for (int i = 0; i < digest.length; i++) {
+                    digest[i] = (byte) (hash >>> (8 * (digest.length - 1 - i)));
+                }
+                writer.write(digest, file.toString());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private long allocatedBytes() {
+        return threadBean == null ? 0 : threadBean.getCurrentThreadAllocatedBytes();
+    }
+
+    private static double mean(final double[] seconds, final double amount) {
+        double sum = 0;
+        for (double time : seconds) {
+            sum += amount / time;
+        }
+        return sum / seconds.length;
+    }
+
+    private static double deviation(final double[] seconds, final double amount) {
+        final double mean = mean(seconds, amount);
+        double sum = 0;
+        for (double time : seconds) {
+            sum += (amount / time - mean) * (amount / time - mean);
+        }
+        return Math.sqrt(sum / seconds.length);
+    }
+
+    /**
+     * Returns file count and total size of the tree.
+     */
+    private static long[] totals(final Path root) throws IOException {
+        final long[] totals = new long[2];
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+                totals[0]++;
+                totals[1] += attributes.size();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return totals;
+    }
+
+    private static void writeFile(final Path file, long size, final Random random) throws IOException {
+        Files.createDirectories(file.getParent());
+        final byte[] buffer = new byte[(int) Math.min(size, 1 << 20)];
+        try (OutputStream outputStream = Files.newOutputStream(file)) {
+            while (size > 0) {
+                random.nextBytes(buffer);
+                final int length = (int) Math.min(size, buffer.length);
+                outputStream.write(buffer, 0, length);
+                size -= length;
+            }
+        }
+    }
+
+    private static void delete(final Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Generator {
+        void generate(Path root, Random random) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface RootWalk {
+        void walk(Path root) throws IOException;
+    }
+
+    private static class Tree {
+        private final String name;
+        private final Generator generator;
+
+        private Tree(final String name, final Generator generator) {
+            this.name = name;
+            this.generator = generator;
+        }
+    }
+
+    private static class Strategy {
+        private final String name;
+        private final boolean parallel;
+        private final RootWalk walk;
+
+        private Strategy(final String name, final boolean parallel, final RootWalk walk) {
+            this.name = name;
+            this.parallel = parallel;
+            this.walk = walk;
+        }
+
+        private void walk(final Path root) throws IOException {
+            walk.walk(root);
+        }
+    }
+
+    private static class NullWriter implements HashWriter {
+        @Override
+        public void write(final byte[] hash, final String file, final boolean tree) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package ru.ifmo.rain.laptev.walk;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a walk, updated concurrently by hashing threads.
+ * Optionally registered on the platform MBean server and reported to {@code System.err} periodically.
+ */
+class WalkMetrics implements WalkMetricsMXBean {
+    static final String OBJECT_NAME = "ru.ifmo.rain.laptev.walk:type=WalkMetrics";
+    private static final int BUCKETS = 25;
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+    private final long start = System.nanoTime();
+    private ObjectName objectName;
+    private ScheduledExecutorService reporter;
+
+    void fileVisited() {
+        files.increment();
+    }
+
+    void fileHashed(final long size, final long nanos) {
+        bytes.add(size);
+        final long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        latencies.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+    }
+
+    void failure() {
+        failures.increment();
+    }
+
+    void register() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            System.err.println("Can't register walk metrics: " + e.getMessage());
+        }
+    }
+
+    void startReporting(final long periodSeconds) {
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "walk-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> System.err.println(report()), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    void stop() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            System.err.println(report());
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException ignored) {
+            }
+        }
+    }
+
+    String report() {
+        return String.format("files %d, %.1f MB, %.0f files/s, %.1f MB/s, failures %d, hash p50 %dus, p99 %dus",
+                getFilesVisited(), getBytesHashed() / 1e6, getFilesPerSecond(), getMegabytesPerSecond(),
+                getFailures(), getHashLatencyPercentile(50), getHashLatencyPercentile(99));
+    }
+
+    @Override
+    public long getFilesVisited() {
+        return files.sum();
+    }
+
+    @Override
+    public long getBytesHashed() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return getFilesVisited() / seconds();
+    }
+
+    @Override
+    public double getMegabytesPerSecond() {
+        return getBytesHashed() / 1e6 / seconds();
+    }
+
+    @Override
+    public long[] getHashLatencyHistogram() {
+        final long[] histogram = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = latencies.get(i);
+        }
+        return histogram;
+    }
+
+    @Override
+    public long getHashLatencyPercentile(final double percentile) {
+        final long[] histogram = getHashLatencyHistogram();
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        final double rank = total * percentile / 100;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram[i];
+            if (seen >= rank && seen > 0) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : 1L << i;
+            }
+        }
+        return 0;
+    }
+
+    private double seconds() {
+        return Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+    }
+}
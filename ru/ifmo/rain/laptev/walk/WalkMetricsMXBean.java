@@ -0,0 +1,30 @@
+package ru.ifmo.rain.laptev.walk;
+
+/**
+ * Live metrics of a running walk, registered as {@value WalkMetrics#OBJECT_NAME}.
+ * Rates are averaged since the walk started.
+ */
+public interface WalkMetricsMXBean {
+    long getFilesVisited();
+
+    long getBytesHashed();
+
+    long getFailures();
+
+    long getElapsedMillis();
+
+    double getFilesPerSecond();
+
+    double getMegabytesPerSecond();
+
+    /**
+     * Counts of per-file hash times, bucket {@code i} counts times below {@code 2^i} microseconds
+     * not counted by the previous bucket, the last bucket counts all longer times.
+     */
+    long[] getHashLatencyHistogram();
+
+    /**
+     * Upper bound in microseconds of the bucket holding the given percentile of hash times.
+     */
+    long getHashLatencyPercentile(double percentile);
+}
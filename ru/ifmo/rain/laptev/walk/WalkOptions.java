@@ -0,0 +1,236 @@
+package ru.ifmo.rain.laptev.walk;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+class WalkOptions {
+    private int threads = 1;
+    private long mappingThreshold = FileHasher.DEFAULT_MAPPING_THRESHOLD;
+    private Path cacheFile;
+    private HashAlgorithm algorithm = HashAlgorithm.FNV1_32;
+    private boolean watch;
+    private long debounceMillis = HashWatcher.DEFAULT_DEBOUNCE_MILLIS;
+    private long dedupeLength;
+    private long treeChunkSize;
+    private boolean linkAware;
+    private boolean followLinks;
+    private boolean jmx;
+    private long progressSeconds;
+    private Path checkpointFile;
+    private long checkpointSeconds = Checkpoint.DEFAULT_INTERVAL_SECONDS;
+    private long asyncOutstanding;
+    private Path manifestFile;
+
+    static WalkOptions parse(final String[] args, final int from) throws WalkerException {
+        WalkOptions options = new WalkOptions();
+        for (int i = from; i < args.length; i++) {
+            final String option = args[i];
+            if (option == null) {
+                throw new WalkerException("Option can't be null");
+            }
+            switch (option) {
+                case "--threads":
+                    options.threads = parsePositive(option, value(args, ++i, option));
+                    break;
+                case "--mmap-threshold":
+                    options.mappingThreshold = parseNonNegative(option, value(args, ++i, option));
+                    break;
+                case "--cache":
+                    options.cacheFile = parsePath(option, value(args, ++i, option));
+                    break;
+                case "--hash":
+                    options.algorithm = parseAlgorithm(option, value(args, ++i, option));
+                    break;
+                case "--watch":
+                    options.watch = true;
+                    break;
+                case "--debounce":
+                    options.debounceMillis = parseNonNegative(option, value(args, ++i, option));
+                    break;
+                case "--dedupe":
+                    options.dedupeLength = (long) parsePositive(option, value(args, ++i, option)) << 10;
+                    break;
+                case "--tree-hash":
+                    options.treeChunkSize = (long) parsePositive(option, value(args, ++i, option)) << 20;
+                    break;
+                case "--link-aware":
+                    options.linkAware = true;
+                    break;
+                case "--follow-links":
+                    options.followLinks = true;
+                    break;
+                case "--jmx":
+                    options.jmx = true;
+                    break;
+                case "--progress":
+                    options.progressSeconds = parsePositive(option, value(args, ++i, option));
+                    break;
+                case "--checkpoint":
+                    options.checkpointFile = parsePath(option, value(args, ++i, option));
+                    break;
+                case "--checkpoint-interval":
+                    options.checkpointSeconds = parsePositive(option, value(args, ++i, option));
+                    break;
+                case "--async-io":
+                    options.asyncOutstanding = (long) parsePositive(option, value(args, ++i, option)) << 20;
+                    break;
+                case "--manifest":
+                    options.manifestFile = parsePath(option, value(args, ++i, option));
+                    break;
+                default:
+                    throw new WalkerException("Unknown option " + option);
+            }
+        }
+        if (options.checkpointFile != null && options.dedupeLength > 0) {
+            throw new WalkerException("Option --checkpoint can't be used with --dedupe");
+        }
+        if (options.checkpointFile != null && options.manifestFile != null) {
+            throw new WalkerException("Option --checkpoint can't be used with --manifest");
+        }
+        if (options.checkpointFile != null && options.watch) {
+            throw new WalkerException("Option --checkpoint can't be used with --watch");
+        }
+        // Records are skipped on resume in walk order, which only the sequential walker hashes in
+        if (options.checkpointFile != null && options.threads > 1) {
+            throw new WalkerException("Option --checkpoint can't be used with --threads");
+        }
+        if (options.checkpointFile != null && options.asyncOutstanding > 0) {
+            throw new WalkerException("Option --checkpoint can't be used with --async-io");
+        }
+        return options;
+    }
+
+    private static String value(final String[] args, final int index, final String option) throws WalkerException {
+        if (index >= args.length || args[index] == null) {
+            throw new WalkerException("Option " + option + " requires a value");
+        }
+        return args[index];
+    }
+
+    private static int parsePositive(final String option, final String value) throws WalkerException {
+        try {
+            int result = Integer.parseInt(value);
+            if (result <= 0) {
+                throw new WalkerException("Option " + option + " must be positive");
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new WalkerException("Option " + option + " must be a number", e);
+        }
+    }
+
+    private static long parseNonNegative(final String option, final String value) throws WalkerException {
+        try {
+            long result = Long.parseLong(value);
+            if (result < 0) {
+                throw new WalkerException("Option " + option + " can't be negative");
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new WalkerException("Option " + option + " must be a number", e);
+        }
+    }
+
+    private static Path parsePath(final String option, final String value) throws WalkerException {
+        try {
+            return Paths.get(value);
+        } catch (InvalidPathException e) {
+            throw new WalkerException("Incorrect " + option + " file name", e);
+        }
+    }
+
+    private static HashAlgorithm parseAlgorithm(final String option, final String value) throws WalkerException {
+        HashAlgorithm algorithm = HashAlgorithm.forName(value);
+        if (algorithm == null) {
+            throw new WalkerException("Unknown " + option + " algorithm " + value);
+        }
+        return algorithm;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    long getMappingThreshold() {
+        return mappingThreshold;
+    }
+
+    Path getCacheFile() {
+        return cacheFile;
+    }
+
+    HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    boolean isWatch() {
+        return watch;
+    }
+
+    long getDebounceMillis() {
+        return debounceMillis;
+    }
+
+    /**
+     * Length in bytes of file head and tail hashed to find duplicate candidates, zero if dedupe mode is off.
+     */
+    long getDedupeLength() {
+        return dedupeLength;
+    }
+
+    /**
+     * Chunk size in bytes of tree hash mode, zero if the mode is off.
+     */
+    long getTreeChunkSize() {
+        return treeChunkSize;
+    }
+
+    /**
+     * Whether paths resolving to an already hashed file key reuse its hash.
+     */
+    boolean isLinkAware() {
+        return linkAware;
+    }
+
+    boolean isFollowLinks() {
+        return followLinks;
+    }
+
+    boolean isJmx() {
+        return jmx;
+    }
+
+    /**
+     * Period of progress lines on {@code System.err}, zero if they are off.
+     */
+    long getProgressSeconds() {
+        return progressSeconds;
+    }
+
+    Path getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    long getCheckpointSeconds() {
+        return checkpointSeconds;
+    }
+
+    /**
+     * Total size in bytes of reads in flight in asynchronous I/O mode, zero if the mode is off.
+     */
+    long getAsyncOutstanding() {
+        return asyncOutstanding;
+    }
+
+    /**
+     * Binary manifest written in addition to the output, {@code null} if it is not written.
+     */
+    Path getManifestFile() {
+        return manifestFile;
+    }
+
+    boolean isParallel() {
+        return threads > 1;
+    }
+}
@@ -0,0 +1,9 @@
+#!/bin/sh
+# Compiles the walk package and runs WalkBenchmark, arguments are passed to the benchmark.
+# Usage: ./benchmark.sh [directory] [--warmup count] [--iterations count] [--scale factor]
+set -e
+root=$(cd "$(dirname "$0")/../../../../.." && pwd)
+out=$(mktemp -d)
+trap 'rm -rf "$out"' EXIT
+javac -d "$out" "$root"/ru/ifmo/rain/laptev/walk/*.java
+java -Xms1g -Xmx1g -XX:+UseParallelGC -cp "$out" ru.ifmo.rain.laptev.walk.WalkBenchmark "$@"
@@ -0,0 +1,81 @@
+package ru.ifmo.rain.laptev.walk.test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.walk.test.WalkTestUtils.*;
+
+class AsyncWalkTest {
+    private static final int BUFF_SIZE = 256 << 10;
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void test1_sameOutputAsSequentialWalk() throws IOException {
+        final Path root = Files.createDirectory(temp.resolve("root"));
+        final Random random = new Random(3178);
+        // Sizes around the read buffer, more than the read-ahead limit and more than all buffers of 1 MiB
+        final int[] sizes = {0, 1, BUFF_SIZE - 1, BUFF_SIZE, BUFF_SIZE + 1, 5 * BUFF_SIZE + 3, 9 * BUFF_SIZE};
+        for (int i = 0; i < 60; i++) {
+            final byte[] bytes = new byte[i < sizes.length ? sizes[i] : random.nextInt(4096)];
+            random.nextBytes(bytes);
+            Files.write(root.resolve("f" + i), bytes);
+        }
+        Files.setPosixFilePermissions(Files.writeString(root.resolve("unreadable"), "unreadable"),
+                PosixFilePermissions.fromString("---------"));
+        Files.createSymbolicLink(root.resolve("dangling"), temp.resolve("missing"));
+        final Path input = writeInput(temp, root, temp.resolve("missing"), root.resolve("f3"));
+
+        final List<String> sequential = walk(input, temp.resolve("sequential.txt"));
+        assertEquals(sequential, walk(input, temp.resolve("async1.txt"), "--async-io", "1"));
+        assertEquals(sequential, walk(input, temp.resolve("async64.txt"), "--async-io", "64"));
+        assertEquals(sequential, walk(input, temp.resolve("threads.txt"), "--async-io", "1", "--threads", "4"));
+        assertEquals(64, sequential.size());
+    }
+
+    @Test
+    void test2_truncatedFile() throws IOException {
+        final byte[] bytes = new byte[3 * BUFF_SIZE];
+        new Random(5).nextBytes(bytes);
+        final Path file = Files.write(temp.resolve("file"), bytes);
+        final Path input = writeInput(temp, file);
+        final Path cache = temp.resolve("cache");
+        walk(input, temp.resolve("before.txt"), "--async-io", "1", "--cache", cache.toString());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(BUFF_SIZE + 7);
+        }
+        final List<String> sequential = walk(input, temp.resolve("sequential.txt"));
+        assertEquals(sequential, walk(input, temp.resolve("async.txt"), "--async-io", "1", "--cache", cache.toString()));
+    }
+
+    @Test
+    void test3_linkAware() throws IOException {
+        final Path root = Files.createDirectory(temp.resolve("root"));
+        final byte[] bytes = new byte[4 * BUFF_SIZE + 5];
+        new Random(7).nextBytes(bytes);
+        final Path file = Files.write(root.resolve("file"), bytes);
+        for (int i = 0; i < 10; i++) {
+            Files.createLink(root.resolve("link" + i), file);
+        }
+        Files.writeString(root.resolve("small"), "small");
+        final Path input = writeInput(temp, root, file, root.resolve("small"), root);
+
+        final List<String> sequential = walk(input, temp.resolve("sequential.txt"));
+        final Path async = temp.resolve("async.txt");
+        // Every link and repeated path reuses the single read of the file
+        assertEquals(1_000_000, bytesHashed(() -> walk(input, async, "--async-io", "1", "--link-aware", "--progress", "3600")));
+        assertEquals(sequential, Files.readAllLines(async));
+        assertEquals(26, sequential.size());
+    }
+}
@@ -0,0 +1,92 @@
+package ru.ifmo.rain.laptev.walk.test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.walk.test.WalkTestUtils.*;
+
+class CheckpointTest {
+    private static final int MAGIC = 0x57434b50;
+    private static final int VERSION = 1;
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void test1_resume() throws IOException {
+        final Path input = writeInput(temp, tree("a", 3), tree("b", 4), Files.writeString(temp.resolve("c"), "c"));
+        final Path expected = temp.resolve("expected.txt");
+        final List<String> lines = walk(input, expected);
+        assertEquals(8, lines.size());
+        final byte[] full = Files.readAllBytes(expected);
+
+        // Every position between records: before line 0, inside and at the end of each line
+        final int[] lineOf = {0, 0, 0, 1, 1, 1, 1, 2};
+        for (int n = 0; n < lines.size(); n++) {
+            final int line = lineOf[n];
+            int records = 0;
+            for (int i = 0; i < n; i++) {
+                records += lineOf[i] == line ? 1 : 0;
+            }
+            assertArrayEquals(full, resume(input, lines, n, line, records), "record " + n);
+        }
+    }
+
+    @Test
+    void test2_rejectedModes() throws IOException {
+        final Path input = writeInput(temp, tree("a", 3));
+        for (String[] options : List.of(
+                new String[]{"--checkpoint", "checkpoint", "--threads", "2"},
+                new String[]{"--checkpoint", "checkpoint", "--async-io", "1"})) {
+            final Path output = temp.resolve("output.txt");
+            options[1] = temp.resolve("checkpoint").toString();
+            assertThrows(IOException.class, () -> walk(input, output, options), Arrays.toString(options));
+            assertFalse(Files.exists(output));
+        }
+    }
+
+    // Resumes a walk interrupted after n records, the last n - records of which belong to given input line
+    private byte[] resume(final Path input, final List<String> lines, final int n,
+                          final int line, final int records) throws IOException {
+        final Path output = temp.resolve("output.txt");
+        final StringBuilder written = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            written.append(lines.get(i)).append(System.lineSeparator());
+        }
+        final byte[] prefix = written.toString().getBytes(StandardCharsets.UTF_8);
+        Files.write(output, prefix);
+        // Records written after the checkpoint was saved are discarded
+        Files.writeString(output, "deadbeef " + temp + System.lineSeparator() + "dead", StandardOpenOption.APPEND);
+
+        final Path checkpoint = temp.resolve("checkpoint");
+        try (DataOutputStream stream = new DataOutputStream(Files.newOutputStream(checkpoint))) {
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+            stream.writeLong(line);
+            stream.writeLong(records);
+            stream.writeLong(prefix.length);
+            stream.writeUTF(records == 0 ? "" : lines.get(n - 1).substring(lines.get(n - 1).indexOf(' ') + 1));
+        }
+        walk(input, output, "--checkpoint", checkpoint.toString());
+        assertFalse(Files.exists(checkpoint));
+        return Files.readAllBytes(output);
+    }
+
+    private Path tree(final String name, final int files) throws IOException {
+        final Path tree = Files.createDirectory(temp.resolve(name));
+        for (int i = 0; i < files; i++) {
+            Files.writeString(tree.resolve(name + i), name + i);
+        }
+        return tree;
+    }
+}
@@ -0,0 +1,113 @@
+package ru.ifmo.rain.laptev.walk.test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.walk.test.WalkTestUtils.*;
+
+class DuplicateFinderTest {
+    // Different contents of equal length with equal FNV-1 32-bit hashes
+    private static final String COLLISION_1 = "00149599";
+    private static final String COLLISION_2 = "00312382";
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void test1_repeatedRoot() throws IOException {
+        final Path tree = Files.createDirectory(temp.resolve("tree"));
+        final Path big = Files.write(tree.resolve("big.bin"), bytes(100_000, 1));
+        final Path copy = Files.write(tree.resolve("copy.bin"), bytes(100_000, 1));
+        Files.write(tree.resolve("other.bin"), bytes(100_000, 2));
+        Files.createLink(tree.resolve("link.bin"), big);
+        final List<List<String>> groups = dedupe("fnv1-32", tree, big, tree.resolve(".").resolve("big.bin"));
+        assertEquals(1, groups.size());
+        final List<String> group = groups.get(0);
+        assertEquals(2, group.size(), group.toString());
+        assertTrue(group.contains(copy.toString()), group.toString());
+    }
+
+    @Test
+    void test2_invalidAndMissingRoots() throws IOException {
+        final Path first = Files.writeString(temp.resolve("first"), "same");
+        final Path second = Files.writeString(temp.resolve("second"), "same");
+        final Path input = temp.resolve("input.txt");
+        Files.write(input, List.of("bad\0path", temp.resolve("missing").toString(), first.toString(), second.toString()));
+        assertEquals(List.of(List.of(first.toString(), second.toString())), groups(walk(input, temp.resolve("output.txt"), "--dedupe", "1")));
+    }
+
+    @Test
+    void test3_hashCollision() throws IOException {
+        final Path first = Files.writeString(temp.resolve("first"), COLLISION_1);
+        final Path second = Files.writeString(temp.resolve("second"), COLLISION_2);
+        assertEquals(List.of(), dedupe("fnv1-32", first, second));
+        final Path copy = Files.writeString(temp.resolve("copy"), COLLISION_2);
+        assertEquals(List.of(List.of(second.toString(), copy.toString())), dedupe("fnv1-32", first, second, copy));
+    }
+
+    @Test
+    void test4_largeCollidingGroup() throws IOException {
+        // More candidates than files compared at once, interleaved so every batch splits
+        final List<Path> roots = new ArrayList<>();
+        final Set<String> firsts = new HashSet<>();
+        final Set<String> seconds = new HashSet<>();
+        for (int i = 0; i < 150; i++) {
+            final boolean odd = i % 2 == 1;
+            final Path file = Files.writeString(temp.resolve("file" + i), odd ? COLLISION_2 : COLLISION_1);
+            roots.add(file);
+            (odd ? seconds : firsts).add(file.toString());
+        }
+        final List<List<String>> groups = dedupe("fnv1-32", roots.toArray(new Path[0]));
+        assertEquals(2, groups.size());
+        final Set<Set<String>> actual = new HashSet<>();
+        for (List<String> group : groups) {
+            actual.add(new HashSet<>(group));
+        }
+        assertEquals(Set.of(firsts, seconds), actual);
+    }
+
+    @Test
+    void test5_sha256() throws IOException {
+        final Path first = Files.writeString(temp.resolve("first"), COLLISION_1);
+        final Path second = Files.writeString(temp.resolve("second"), COLLISION_2);
+        final Path copy = Files.writeString(temp.resolve("copy"), COLLISION_1);
+        assertEquals(List.of(List.of(first.toString(), copy.toString())), dedupe("sha-256", first, second, copy));
+    }
+
+    private List<List<String>> dedupe(final String algorithm, final Path... roots) throws IOException {
+        return groups(walk(writeInput(temp, roots), temp.resolve("output.txt"), "--dedupe", "1", "--hash", algorithm));
+    }
+
+    // Paths of each group, every record of a group must have the same hash
+    private static List<List<String>> groups(final List<String> lines) {
+        final List<List<String>> groups = new ArrayList<>();
+        final List<String> hashes = new ArrayList<>();
+        List<String> group = new ArrayList<>();
+        for (String line : lines) {
+            if (line.isEmpty()) {
+                groups.add(group);
+                group = new ArrayList<>();
+                hashes.clear();
+                continue;
+            }
+            final int space = line.indexOf(' ');
+            hashes.add(line.substring(0, space));
+            assertEquals(1, new HashSet<>(hashes).size(), line);
+            group.add(line.substring(space + 1));
+        }
+        assertTrue(group.isEmpty());
+        return groups;
+    }
+
+    private static byte[] bytes(final int length, final int seed) {
+        final byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,76 @@
+package ru.ifmo.rain.laptev.walk.test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.walk.test.WalkTestUtils.*;
+
+class HashAlgorithmTest {
+    private static final String[] CONTENTS = {"", "a", "abc", "foobar", "x".repeat(100)};
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void test1_fnv1_32() throws IOException {
+        assertVectors("fnv1-32", "811c9dc5", "050c5d7e", "439c2f4b", "31f0b262", "35004f35");
+    }
+
+    @Test
+    void test2_fnv1a_64() throws IOException {
+        assertVectors("fnv1a-64", "cbf29ce484222325", "af63dc4c8601ec8c", "e71fa2190541574b", "85944171f73967e8",
+                "052c9e7cec411035");
+    }
+
+    @Test
+    void test3_xxhash64() throws IOException {
+        assertVectors("xxhash64", "ef46db3751d8e999", "d24ec4f1a98c6e5b", "44bc2cf5ad770999", "a2aa05ed9085aaf9",
+                "92f0de5a88a3c094");
+    }
+
+    @Test
+    void test4_sha256() throws IOException {
+        assertVectors("sha-256",
+                "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+                "ca978112ca1bbdcafac231b39a23dc4da786eff8147c4e72b9807785afee48bb",
+                "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                "c3ab8ff13720e8ad9047dd39466b3c8974e592c2fa383d4a3960714caef0c4f2",
+                "09ecb6ebc8bcefc733f6f2ec44f791abeed6a99edf0cc31519637898aebd52d8");
+    }
+
+    @Test
+    void test5_stableIds() throws IOException {
+        // Ids written to cache headers must never change, or old caches would be read with another algorithm
+        final String[] names = {"fnv1-32", "fnv1a-64", "xxhash64", "sha-256"};
+        final int[] lengths = {4, 8, 8, 32};
+        final Path input = writeInput(temp, Files.writeString(temp.resolve("file"), "abc"));
+        for (int i = 0; i < names.length; i++) {
+            final Path cache = temp.resolve("cache-" + names[i]);
+            walk(input, temp.resolve("output.txt"), "--hash", names[i], "--cache", cache.toString());
+            final ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(cache));
+            assertEquals(i + 1, header.getInt(8), names[i]);
+            assertEquals(lengths[i], header.getInt(12), names[i]);
+        }
+    }
+
+    private void assertVectors(final String algorithm, final String... expected) throws IOException {
+        final Path directory = Files.createDirectory(temp.resolve(algorithm));
+        final Path[] files = new Path[CONTENTS.length];
+        for (int i = 0; i < CONTENTS.length; i++) {
+            files[i] = Files.write(directory.resolve("file" + i), CONTENTS[i].getBytes(StandardCharsets.US_ASCII));
+        }
+        final Map<String, String> hashes = hashes(walk(writeInput(directory, files), directory.resolve("output.txt"),
+                "--hash", algorithm));
+        for (int i = 0; i < CONTENTS.length; i++) {
+            assertEquals(expected[i], hashes.get(files[i].toString()), "\"" + CONTENTS[i] + "\"");
+        }
+    }
+}
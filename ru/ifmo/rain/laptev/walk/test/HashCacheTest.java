@@ -0,0 +1,98 @@
+package ru.ifmo.rain.laptev.walk.test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.walk.test.WalkTestUtils.*;
+
+class HashCacheTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    void test1_unchangedFileIsNotReread() throws IOException {
+        final Path file = Files.writeString(temp.resolve("file"), "abc");
+        final Path cache = temp.resolve("cache");
+        assertEquals(hash("abc"), walkCached(file, cache, "fnv1-32"));
+        // Same size and modification time: the stale cached hash proves the file was not read
+        replaceKeepingTime(file, "xyz");
+        assertEquals(hash("abc"), walkCached(file, cache, "fnv1-32"));
+        assertEquals(hash("xyz"), walkCached(file, null, "fnv1-32"));
+    }
+
+    @Test
+    void test2_modificationTimeChange() throws IOException {
+        final Path file = Files.writeString(temp.resolve("file"), "abc");
+        final Path cache = temp.resolve("cache");
+        walkCached(file, cache, "fnv1-32");
+        replaceKeepingTime(file, "xyz");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() - 10_000));
+        assertEquals(hash("xyz"), walkCached(file, cache, "fnv1-32"));
+    }
+
+    @Test
+    void test3_sizeChange() throws IOException {
+        final Path file = Files.writeString(temp.resolve("file"), "abc");
+        final Path cache = temp.resolve("cache");
+        walkCached(file, cache, "fnv1-32");
+        final FileTime time = Files.getLastModifiedTime(file);
+        Files.writeString(file, "abcd");
+        Files.setLastModifiedTime(file, time);
+        assertEquals(hash("abcd"), walkCached(file, cache, "fnv1-32"));
+    }
+
+    @Test
+    void test4_algorithmMismatch() throws IOException {
+        // Both digests are 8 bytes long, only the algorithm id in the header tells the caches apart
+        final Path file = Files.writeString(temp.resolve("file"), "abc");
+        final Path cache = temp.resolve("cache");
+        walkCached(file, cache, "fnv1a-64");
+        replaceKeepingTime(file, "xyz");
+        final String expected = walkCached(file, null, "xxhash64");
+        assertEquals(expected, walkCached(file, cache, "xxhash64"));
+
+        replaceKeepingTime(file, "abc");
+        walkCached(file, cache, "fnv1a-64");
+        final byte[] bytes = Files.readAllBytes(cache);
+        ByteBuffer.wrap(bytes).putInt(8, 0);
+        Files.write(cache, bytes);
+        replaceKeepingTime(file, "xyz");
+        assertEquals(walkCached(file, null, "fnv1a-64"), walkCached(file, cache, "fnv1a-64"));
+    }
+
+    @Test
+    void test5_corruptCache() throws IOException {
+        final Path file = Files.writeString(temp.resolve("file"), "abc");
+        final Path cache = Files.write(temp.resolve("cache"), new byte[]{1, 2, 3});
+        assertEquals(hash("abc"), walkCached(file, cache, "fnv1-32"));
+        replaceKeepingTime(file, "xyz");
+        assertEquals(hash("abc"), walkCached(file, cache, "fnv1-32"));
+    }
+
+    // Hash of the contents computed without cache
+    private String hash(final String contents) throws IOException {
+        return walkCached(Files.writeString(temp.resolve("reference"), contents), null, "fnv1-32");
+    }
+
+    private String walkCached(final Path file, final Path cache, final String algorithm) throws IOException {
+        final Path output = temp.resolve("output.txt");
+        final Map<String, String> hashes = cache == null
+                ? hashes(walk(writeInput(temp, file), output, "--hash", algorithm))
+                : hashes(walk(writeInput(temp, file), output, "--hash", algorithm, "--cache", cache.toString()));
+        return hashes.get(file.toString());
+    }
+
+    private static void replaceKeepingTime(final Path file, final String contents) throws IOException {
+        final FileTime time = Files.getLastModifiedTime(file);
+        Files.writeString(file, contents);
+        Files.setLastModifiedTime(file, time);
+    }
+}
@@ -0,0 +1,57 @@
+package ru.ifmo.rain.laptev.walk.test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.walk.test.WalkTestUtils.*;
+
+class LinkAwareTest {
+    private static final int SIZE = 1_000_000;
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void test1_hardLinkAndRepeatedRoot() throws IOException {
+        final Path linked = Files.write(temp.resolve("linked"), bytes(1));
+        final Path link = Files.createLink(temp.resolve("link"), linked);
+        // A single link, reached twice only because it is listed twice
+        final Path single = Files.write(temp.resolve("single"), bytes(2));
+        final Path input = writeInput(temp, linked, link, single, single);
+
+        final Path expected = temp.resolve("expected.txt");
+        assertEquals(4 * SIZE, bytesHashed(() -> walk(input, expected, "--progress", "3600")));
+        final Path actual = temp.resolve("actual.txt");
+        assertEquals(2 * SIZE, bytesHashed(() -> walk(input, actual, "--progress", "3600", "--link-aware")));
+        assertEquals(Files.readAllLines(expected), Files.readAllLines(actual));
+        assertEquals(4, Files.readAllLines(actual).size());
+    }
+
+    @Test
+    void test2_parallelRepeatedTree() throws IOException {
+        final Path tree = Files.createDirectory(temp.resolve("tree"));
+        final Path linked = Files.write(tree.resolve("linked"), bytes(1));
+        final Path link = Files.createLink(tree.resolve("link"), linked);
+        final Path single = Files.write(tree.resolve("single"), bytes(2));
+        final Path input = writeInput(temp, linked, link, single, tree, tree);
+
+        final Path expected = temp.resolve("expected.txt");
+        final List<String> lines = walk(input, expected);
+        final Path actual = temp.resolve("actual.txt");
+        assertEquals(2 * SIZE, bytesHashed(() -> walk(input, actual, "--progress", "3600", "--link-aware", "--threads", "4")));
+        assertEquals(lines, Files.readAllLines(actual));
+    }
+
+    private static byte[] bytes(final int seed) {
+        final byte[] bytes = new byte[SIZE];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,113 @@
+package ru.ifmo.rain.laptev.walk.test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.ifmo.rain.laptev.walk.ManifestTool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.walk.test.WalkTestUtils.*;
+
+class ManifestTest {
+    private static final int FILES = 300;
+    // Missing paths too long to stat still get records, enough of them to spill several sorted runs of 64 MiB
+    private static final int LONG_PATHS = 1800;
+    private static final int LONG_PATH_LENGTH = 40_000;
+    private static final long RUN_BYTES = 64L << 20;
+    private static final int RECORD_OVERHEAD = 64;
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void test1_lookup() throws IOException {
+        final Path manifest = temp.resolve("manifest");
+        final Map<String, String> hashes = hashes(walk(input(), temp.resolve("output.txt"), "--manifest", manifest.toString()));
+        assertEquals(FILES + LONG_PATHS, hashes.size());
+        long recordBytes = 0;
+        for (String path : hashes.keySet()) {
+            recordBytes += path.getBytes(StandardCharsets.UTF_8).length + 4 + RECORD_OVERHEAD;
+        }
+        assertTrue(recordBytes > RUN_BYTES);
+
+        // First, last and middle entries, entries around the first block boundary and the last long path
+        final List<String> sorted = new ArrayList<>(hashes.keySet());
+        Collections.sort(sorted);
+        final List<String> keys = List.of(sorted.get(0), sorted.get(1), sorted.get(63), sorted.get(64), sorted.get(65),
+                sorted.get(sorted.size() / 2), sorted.get(sorted.size() - 1),
+                sorted.get(LONG_PATHS - 1), sorted.get(LONG_PATHS));
+        final List<String> expected = new ArrayList<>();
+        for (String key : keys) {
+            expected.add(hashes.get(key) + " " + key);
+        }
+        final String before = sorted.get(0).substring(0, sorted.get(0).length() - 1);
+        final String between = sorted.get(100) + "0";
+        final String after = sorted.get(sorted.size() - 1) + "0";
+        for (String absent : List.of(before, between, after, "")) {
+            assertFalse(hashes.containsKey(absent));
+            expected.add("not found " + absent);
+        }
+
+        final List<String> args = new ArrayList<>(List.of("lookup", manifest.toString()));
+        args.addAll(keys);
+        args.addAll(List.of(before, between, after, ""));
+        assertEquals(expected, tool(args.toArray(new String[0])));
+    }
+
+    @Test
+    void test2_diff() throws IOException {
+        final Path input = input();
+        final Path oldManifest = temp.resolve("old");
+        final Map<String, String> oldHashes = hashes(walk(input, temp.resolve("old.txt"), "--manifest", oldManifest.toString()));
+
+        final Path tree = temp.resolve("tree");
+        final Path changed = tree.resolve("f150");
+        Files.writeString(changed, "changed");
+        final Path removed = tree.resolve("f7");
+        Files.delete(removed);
+        final Path added = Files.writeString(tree.resolve("f7a"), "added");
+        final Path newManifest = temp.resolve("new");
+        final Map<String, String> newHashes = hashes(walk(input, temp.resolve("new.txt"), "--manifest", newManifest.toString()));
+
+        // Entries in path order: f150 < f7 < f7a
+        assertEquals(List.of(
+                "~ " + oldHashes.get(changed.toString()) + " " + newHashes.get(changed.toString()) + " " + changed,
+                "- " + oldHashes.get(removed.toString()) + " " + removed,
+                "+ " + newHashes.get(added.toString()) + " " + added
+        ), tool("diff", oldManifest.toString(), newManifest.toString()));
+        assertEquals(List.of(), tool("diff", newManifest.toString(), newManifest.toString()));
+    }
+
+    private Path input() throws IOException {
+        final Path tree = Files.createDirectory(temp.resolve("tree"));
+        for (int i = 0; i < FILES; i++) {
+            Files.writeString(tree.resolve("f" + i), "file " + i);
+        }
+        final List<String> lines = new ArrayList<>(List.of(tree.toString()));
+        final String name = "x".repeat(LONG_PATH_LENGTH);
+        for (int i = 0; i < LONG_PATHS; i++) {
+            lines.add(temp.resolve("missing" + i).resolve(name).toString());
+        }
+        return Files.write(temp.resolve("input.txt"), lines, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> tool(final String... args) {
+        final PrintStream out = System.out;
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+        try {
+            ManifestTool.main(args);
+        } finally {
+            System.setOut(out);
+        }
+        final String output = buffer.toString(StandardCharsets.UTF_8);
+        return output.isEmpty() ? List.of() : List.of(output.split(System.lineSeparator()));
+    }
+}
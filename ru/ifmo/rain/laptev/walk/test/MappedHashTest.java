@@ -0,0 +1,73 @@
+package ru.ifmo.rain.laptev.walk.test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.walk.test.WalkTestUtils.*;
+
+class MappedHashTest {
+    private static final int BUFF_SIZE = 64 << 10;
+    private static final int WINDOW_SIZE = 64 << 20;
+    private static final String[] ALGORITHMS = {"fnv1-32", "fnv1a-64", "xxhash64", "sha-256"};
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void test1_mappedEqualsRead() throws IOException {
+        final Random random = new Random(8124);
+        final int[] sizes = {0, 1, 31, 32, 33, BUFF_SIZE - 1, BUFF_SIZE, BUFF_SIZE + 1, 3 * BUFF_SIZE + 7};
+        final Path[] files = new Path[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            final byte[] bytes = new byte[sizes[i]];
+            random.nextBytes(bytes);
+            files[i] = Files.write(temp.resolve("file" + i), bytes);
+        }
+        final Path input = writeInput(temp, files);
+        for (String algorithm : ALGORITHMS) {
+            final List<String> read = walk(input, temp.resolve("read.txt"), "--hash", algorithm,
+                    "--mmap-threshold", Long.toString(Long.MAX_VALUE));
+            assertEquals(read, walk(input, temp.resolve("mapped.txt"), "--hash", algorithm, "--mmap-threshold", "0"));
+            assertEquals(read, walk(input, temp.resolve("mixed.txt"), "--hash", algorithm,
+                    "--mmap-threshold", Integer.toString(BUFF_SIZE)));
+        }
+    }
+
+    @Test
+    void test2_severalWindows() throws IOException, NoSuchAlgorithmException {
+        // Mapped in two windows, the second one shorter than a buffer
+        final Path file = temp.resolve("large");
+        final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        final Random random = new Random(3391);
+        final byte[] bytes = new byte[1 << 20];
+        try (OutputStream output = Files.newOutputStream(file)) {
+            for (int i = 0; i < WINDOW_SIZE / bytes.length; i++) {
+                random.nextBytes(bytes);
+                output.write(bytes);
+                digest.update(bytes);
+            }
+            output.write(bytes, 0, 13);
+            digest.update(bytes, 0, 13);
+        }
+        final Path input = writeInput(temp, file);
+        for (String algorithm : ALGORITHMS) {
+            final List<String> read = walk(input, temp.resolve("read.txt"), "--hash", algorithm);
+            assertEquals(read, walk(input, temp.resolve("mapped.txt"), "--hash", algorithm, "--mmap-threshold", "0"));
+        }
+        final Map<String, String> hashes = hashes(walk(input, temp.resolve("sha.txt"), "--hash", "sha-256",
+                "--mmap-threshold", "0"));
+        assertEquals(String.format("%064x", new BigInteger(1, digest.digest())), hashes.get(file.toString()));
+    }
+}
@@ -0,0 +1,43 @@
+package ru.ifmo.rain.laptev.walk.test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ifmo.rain.laptev.walk.test.WalkTestUtils.*;
+
+class ParallelWalkTest {
+    private static final int DIRECTORIES = 24;
+    private static final int FILES = 250;
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void test1_sameOrderAsSequentialWalk() throws IOException {
+        final Path root = temp.resolve("root");
+        final Random random = new Random(4875);
+        for (int i = 0; i < DIRECTORIES; i++) {
+            final Path directory = Files.createDirectories(root.resolve("d" + i).resolve("nested" + i % 3));
+            for (int j = 0; j < FILES; j++) {
+                final byte[] bytes = new byte[random.nextInt(64)];
+                random.nextBytes(bytes);
+                Files.write((j % 2 == 0 ? directory : directory.getParent()).resolve("f" + j), bytes);
+            }
+        }
+        Files.createDirectories(root.resolve("empty"));
+        final Path input = writeInput(temp, root, temp.resolve("missing"), root.resolve("d1"));
+
+        final List<String> sequential = walk(input, temp.resolve("sequential.txt"));
+        for (String threads : new String[]{"2", "4", "8"}) {
+            assertEquals(sequential, walk(input, temp.resolve("parallel" + threads + ".txt"), "--threads", threads));
+        }
+        assertEquals(DIRECTORIES * FILES + FILES + 1, sequential.size());
+    }
+}
@@ -0,0 +1,84 @@
+package ru.ifmo.rain.laptev.walk.test;
+
+import ru.ifmo.rain.laptev.walk.RecursiveWalk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class WalkTestUtils {
+    private static final Pattern HASHED = Pattern.compile("files [0-9]+, ([0-9]+)[.,]([0-9]) MB");
+
+    private WalkTestUtils() {
+        throw new UnsupportedOperationException("Instance of class 'WalkTestUtils' is unsupported");
+    }
+
+    static Path writeInput(final Path directory, final Path... roots) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        for (Path root : roots) {
+            lines.add(root.toString());
+        }
+        return Files.write(directory.resolve("input.txt"), lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs {@link RecursiveWalk} and returns the lines of its output.
+     */
+    static List<String> walk(final Path input, final Path output, final String... options) throws IOException {
+        final String[] args = new String[options.length + 2];
+        args[0] = input.toString();
+        args[1] = output.toString();
+        System.arraycopy(options, 0, args, 2, options.length);
+        RecursiveWalk.main(args);
+        return Files.readAllLines(output, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Hashes of output lines by path.
+     */
+    static Map<String, String> hashes(final List<String> lines) {
+        final Map<String, String> hashes = new LinkedHashMap<>();
+        for (String line : lines) {
+            final int space = line.indexOf(' ');
+            hashes.put(line.substring(space + 1), line.substring(0, space));
+        }
+        return hashes;
+    }
+
+    /**
+     * Runs a walk with {@code --progress} and returns the bytes hashed from its final report, rounded to 0.1 MB.
+     */
+    static long bytesHashed(final Walk walk) throws IOException {
+        final PrintStream err = System.err;
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(buffer, true));
+        try {
+            walk.run();
+        } finally {
+            System.setErr(err);
+        }
+        final Matcher matcher = HASHED.matcher(buffer.toString());
+        long result = -1;
+        while (matcher.find()) {
+            result = (Long.parseLong(matcher.group(1)) * 10 + Long.parseLong(matcher.group(2))) * 100_000;
+        }
+        assertNotEquals(-1, result, buffer.toString());
+        return result;
+    }
+
+    @FunctionalInterface
+    interface Walk {
+        void run() throws IOException;
+    }
+}